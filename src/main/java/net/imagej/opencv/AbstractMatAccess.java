@@ -0,0 +1,103 @@
+/*-
+ * #%L
+ * ImageJ/OpenCV Integration
+ * %%
+ * Copyright (C) 2019 - 2024 ImageJ2 developers.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imagej.opencv;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.bytedeco.javacpp.PointerScope;
+import org.bytedeco.opencv.opencv_core.Mat;
+
+/**
+ * Base class of the {@link MatAccess} implementations, exposing the memory of
+ * a Mat as a direct {@link ByteBuffer} in native byte order. Continuous Mats
+ * of any dimensionality are supported, as well as 2 dimensional Mats with
+ * padded rows such as submatrices (ROIs) of a larger Mat.
+ */
+abstract class AbstractMatAccess implements MatAccess {
+
+	private final Mat mat;
+
+	/** Whether the rows of the Mat are padded, e.g. in a submatrix (ROI). */
+	private final boolean strided;
+
+	/** Number of elements in a row, counting all channels. */
+	private final int rowLength;
+
+	/** Distance between the starts of two rows, in elements. */
+	private final int rowStride;
+
+	protected AbstractMatAccess( final Mat mat ) {
+		this.mat = retain( mat );
+		strided = !mat.isContinuous();
+		if ( strided ) {
+			if ( mat.dims() > 2 )
+				throw new IllegalArgumentException( "Only continuous Mats can be wrapped if they have more than 2 dimensions" );
+			rowLength = mat.cols() * mat.channels();
+			rowStride = ( int ) mat.step1( 0 );
+		} else {
+			rowLength = rowStride = 0;
+		}
+	}
+
+	@Override
+	public Mat getMat() {
+		return mat;
+	}
+
+	/**
+	 * Returns a new header of the given Mat, sharing its reference counted
+	 * data and its {@link NativeMemoryBudget} reservation, that is released
+	 * by the garbage collector only.
+	 */
+	private static Mat retain( final Mat mat ) {
+		final Mat header = NativeMemoryBudget.share( mat );
+		final PointerScope scope = PointerScope.getInnerScope();
+		if ( scope != null )
+			NativeMemoryBudget.detach( scope, header );
+		return header;
+	}
+
+	/**
+	 * Maps the flat index of an element in the image to its index in the
+	 * buffer, skipping the padding between rows of strided Mats.
+	 */
+	protected final int index( final int i ) {
+		return strided ? ( i / rowLength ) * rowStride + i % rowLength : i;
+	}
+
+	protected ByteBuffer byteBuffer() {
+		final long bytes = strided
+				? ( ( long ) ( mat.rows() - 1 ) * rowStride + rowLength ) * mat.elemSize1()
+				: mat.total() * mat.elemSize();
+		if ( bytes > Integer.MAX_VALUE )
+			throw new IllegalArgumentException( "Mat is too large to be wrapped: " + bytes + " bytes" );
+		return mat.data().capacity( bytes ).asByteBuffer().order( ByteOrder.nativeOrder() );
+	}
+}
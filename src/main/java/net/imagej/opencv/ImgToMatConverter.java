@@ -28,6 +28,11 @@
  */
 package net.imagej.opencv;
 
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import net.imglib2.type.numeric.integer.*;
 import org.bytedeco.javacpp.*;
 import org.bytedeco.opencv.opencv_core.Mat;
@@ -39,18 +44,42 @@ import org.scijava.convert.Converter;
 import org.scijava.log.LogService;
 import org.scijava.plugin.Plugin;
 
+import net.imglib2.Interval;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
 import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.array.ArrayImg;
 import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.cell.AbstractCellImg;
+import net.imglib2.img.cell.Cell;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.img.cell.CellImg;
+import net.imglib2.img.planar.PlanarImg;
 import net.imglib2.loops.LoopBuilder;
+import net.imglib2.parallel.Parallelization;
+import net.imglib2.parallel.TaskExecutor;
+import net.imglib2.type.NativeType;
 import net.imglib2.type.Type;
+import net.imglib2.type.logic.BitType;
+import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.type.numeric.IntegerType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.complex.ComplexDoubleType;
+import net.imglib2.type.numeric.complex.ComplexFloatType;
 import net.imglib2.type.numeric.real.DoubleType;
 import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.IntervalIndexer;
 import net.imglib2.util.Intervals;
 import net.imglib2.util.Util;
+import net.imglib2.view.Views;
 
 /**
- * Only 2 dimensional, 1 channel images are supported here.
- * For 3 dimensions see {@link ImgToMatVectorConverter}
+ * Converts images of any dimensionality to a single Mat whose sizes are the
+ * image dimensions in reverse order, e.g. an {@code X x Y x Z} image becomes
+ * a Mat of sizes {@code Z x Y x X}. For a vector of 2D Mats see
+ * {@link ImgToMatVectorConverter}. Pixels are copied on the threads of the
+ * current {@link Parallelization} context.
  * @author G.Turek for OpenCV version 4.1.2
  */
 
@@ -58,6 +87,15 @@ import net.imglib2.util.Util;
 @Plugin( type = Converter.class, priority = Priority.LOW )
 public class ImgToMatConverter extends AbstractConverter< RandomAccessibleInterval, Mat > {
 
+	/** Number of 64 pixel words of a bit mask packed or unpacked by one task. */
+	static final int WORDS_PER_CHUNK = 1024;
+
+	/**
+	 * Maximum length of a Java array, and of the byte buffer of an image
+	 * wrapping a Mat. Larger images are converted in bands or cells.
+	 */
+	static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+
 	@Override
 	public int compareTo( Prioritized o ) {
 		return super.compareTo( o );
@@ -92,28 +130,344 @@ public class ImgToMatConverter extends AbstractConverter< RandomAccessibleInterv
 
 	/**
 	 * Creates am OpenCV Mat matrix containing data from the given image.
+	 * Complex images become two channel Mats, {@link ARGBType} images BGRA
+	 * Mats and {@link BitType} images 0/255 masks. Other {@link RealType}s
+	 * without an OpenCV depth are converted, see {@link #getDepth(RealType)}.
 	 * throws IllegalArgumentException
 	 *             if the type of the image is not supported.
-	 *             Supported types are {@link ByteType}, {@link DoubleType},
-	 *             {@link FloatType} and {@link IntType}
 	 */
-	@SuppressWarnings( "unchecked" )
 	public static < T > Mat toMat(
 			final RandomAccessibleInterval< T > image ) {
-		if ( image.numDimensions() > 2 )
-			throw new IllegalArgumentException( "Images with more than 2 dimensions are not supported here, use ImgToMatVectorConverter" );
-		final T type = Util.getTypeFromInterval( image );
-		if ( type instanceof UnsignedByteType ) {
-			return getUnsignedByteMat( ( RandomAccessibleInterval< UnsignedByteType > ) image );
+		final Mat backingMat = getBackingMat( image );
+		if ( backingMat != null )
+			return backingMat;
+		return toMat( image, new Mat() );
+	}
+
+	/**
+	 * Creates an OpenCV Mat containing data from the given image, like
+	 * {@link #toMat(RandomAccessibleInterval)}, reserving its memory against
+	 * the given budget.
+	 * 
+	 * @throws OutOfMemoryError
+	 *             if the Mat does not fit into the budget.
+	 */
+	public static < T > Mat toMat( final RandomAccessibleInterval< T > image, final NativeMemoryBudget budget ) {
+		final Mat backingMat = getBackingMat( image );
+		if ( backingMat != null )
+			return backingMat;
+		final int[] sizes = getMatSizes( Intervals.dimensionsAsLongArray( image ) );
+		return toMat( image, budget.allocate( sizes, getMatType( Util.getTypeFromInterval( image ) ) ) );
+	}
+
+	/**
+	 * Returns a new header of the Mat backing an image created by a
+	 * {@link MatImgFactory}, or {@code null} if the image has to be copied.
+	 */
+	private static Mat getBackingMat( final RandomAccessibleInterval< ? > image ) {
+		if ( !( image instanceof ArrayImg ) )
+			return null;
+		final Object access = ( ( ArrayImg< ?, ? > ) image ).update( null );
+		if ( !( access instanceof MatAccess ) )
+			return null;
+		final Mat mat = ( ( MatAccess ) access ).getMat();
+		final int[] sizes = getMatSizes( Intervals.dimensionsAsLongArray( image ) );
+		if ( mat.isContinuous() && hasLayout( mat, sizes, getCvType( Util.getTypeFromInterval( image ) ) ) )
+			return NativeMemoryBudget.share( mat );
+		return null;
+	}
 
+	/**
+	 * Puts the data of the given image into the given Mat, like
+	 * {@link #toMat(RandomAccessibleInterval)}. The Mat is reallocated only if
+	 * its sizes or type differ from the ones required for the image, as by
+	 * OpenCV's {@code Mat.create}.
+	 * 
+	 * @param image
+	 *            The image which should be put into the Mat.
+	 * @param dst
+	 *            The Mat to copy the image into, possibly empty.
+	 * @return The given Mat.
+	 * @throws IllegalArgumentException
+	 *             if the type of the image is not supported.
+	 * @throws OutOfMemoryError
+	 *             if the reallocated Mat does not fit into its budget.
+	 */
+	public static < T > Mat toMat( final RandomAccessibleInterval< T > image, final Mat dst ) {
+		return toMat( image, dst, MAX_ARRAY_LENGTH );
+	}
+
+	/**
+	 * Puts the data of the given image into the given Mat, writing it in bands
+	 * of at most {@code maxBandBytes} if it has to be copied through a wrapped
+	 * Mat, see {@link #writesInBulk}.
+	 */
+	static < T > Mat toMat( final RandomAccessibleInterval< T > image, final Mat dst, final long maxBandBytes ) {
+		final int cvType = getMatType( Util.getTypeFromInterval( image ) );
+		final int[] sizes = getMatSizes( Intervals.dimensionsAsLongArray( image ) );
+		NativeMemoryBudget.create( dst, sizes, cvType );
+		if ( dst.total() * dst.elemSize() <= maxBandBytes || writesInBulk( image, dst ) )
+			write( image, dst );
+		else
+			writeInBands( image, dst, maxBandBytes );
+		return dst;
+	}
+
+	/**
+	 * Whether {@link #write} copies the image without wrapping the Mat, which
+	 * is limited to {@link #MAX_ARRAY_LENGTH} bytes.
+	 */
+	private static boolean writesInBulk( final RandomAccessibleInterval< ? > image, final Mat mat ) {
+		if ( !mat.isContinuous() )
+			return false;
+		final Object type = Util.getTypeFromInterval( image );
+		final Object array = getStorageArray( image );
+		if ( type instanceof ARGBType )
+			return mat.channels() == 4 && array instanceof int[] && ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+		if ( type instanceof BitType )
+			return array instanceof long[];
+		if ( isPrimitiveType( type ) || type instanceof ComplexFloatType || type instanceof ComplexDoubleType )
+			return array != null || image instanceof AbstractCellImg;
+		return false;
+	}
+
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	private static void write( final RandomAccessibleInterval< ? > image, final Mat mat ) {
+		final Object type = Util.getTypeFromInterval( image );
+		if ( type instanceof ARGBType )
+			putColors( ( RandomAccessibleInterval< ARGBType > ) image, mat );
+		else if ( type instanceof BitType )
+			putMask( ( RandomAccessibleInterval< BitType > ) image, mat );
+		else if ( type instanceof RealType && !isPrimitiveType( type ) )
+			convertToMat( ( RandomAccessibleInterval< ? extends RealType< ? > > ) image, mat, 1, 0 );
+		else
+			copyToMat( ( RandomAccessibleInterval ) image, mat );
+	}
+
+	/**
+	 * Writes an image into a Mat too large to be viewed as a single
+	 * {@link ArrayImg}, one band at a time. A band spans the full extent of
+	 * the lower dimensions, so it is a contiguous part of the Mat and can be
+	 * written through a Mat header of its own.
+	 */
+	private static void writeInBands( final RandomAccessibleInterval< ? > image, final Mat mat, final long maxBandBytes ) {
+		if ( !mat.isContinuous() )
+			throw new IllegalArgumentException( "Mats of more than " + maxBandBytes + " bytes must be continuous" );
+		final int n = image.numDimensions();
+		final long[] dimensions = Intervals.dimensionsAsLongArray( image );
+		final long[] bandDimensions = getBandDimensions( dimensions, Math.max( 1, maxBandBytes / mat.elemSize() ) );
+		final CellGrid bands = new CellGrid( dimensions, Arrays.stream( bandDimensions ).mapToInt( d -> ( int ) d ).toArray() );
+		final long[] gridDimensions = bands.getGridDimensions();
+		final long numBands = Intervals.numElements( gridDimensions );
+		final long[] gridPosition = new long[ n ];
+		final long[] min = new long[ n ];
+		final int[] size = new int[ n ];
+		for ( long i = 0; i < numBands; i++ ) {
+			IntervalIndexer.indexToPosition( i, gridDimensions, gridPosition );
+			bands.getCellDimensions( gridPosition, min, size );
+			final long offset = IntervalIndexer.positionToIndex( min, dimensions ) * mat.elemSize();
+			final long[] bandMin = new long[ n ];
+			final long[] bandMax = new long[ n ];
+			final long[] bandSize = new long[ n ];
+			for ( int d = 0; d < n; d++ ) {
+				bandMin[ d ] = image.min( d ) + min[ d ];
+				bandMax[ d ] = bandMin[ d ] + size[ d ] - 1;
+				bandSize[ d ] = size[ d ];
+			}
+			final RandomAccessibleInterval< ? > band = Views.zeroMin( Views.interval( image, bandMin, bandMax ) );
+			final int[] sizes = getMatSizes( bandSize );
+			try (Mat bandMat = new Mat( sizes.length, sizes, mat.type(), mat.data().position( offset ) )) {
+				write( band, bandMat );
+			}
+		}
+	}
+
+	/**
+	 * Returns the dimensions of the largest band of at most the given number
+	 * of pixels that is contiguous in an image of the given dimensions: the
+	 * full extent of the lower dimensions, part of the next one, and a single
+	 * position in the higher ones.
+	 */
+	static long[] getBandDimensions( final long[] dimensions, final long maxPixels ) {
+		final long[] band = new long[ dimensions.length ];
+		Arrays.fill( band, 1 );
+		long pixels = 1;
+		for ( int d = 0; d < dimensions.length; d++ ) {
+			if ( pixels * dimensions[ d ] > maxPixels ) {
+				band[ d ] = Math.max( 1, maxPixels / pixels );
+				break;
+			}
+			band[ d ] = dimensions[ d ];
+			pixels *= dimensions[ d ];
+		}
+		return band;
+	}
+
+	/**
+	 * Returns the given number of elements as the length of a Java array.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if an array cannot hold that many elements.
+	 */
+	static int getArrayLength( final long numElements ) {
+		if ( numElements > MAX_ARRAY_LENGTH )
+			throw new IllegalArgumentException( "Too many elements for a Java array: " + numElements );
+		return ( int ) numElements;
+	}
+
+	/**
+	 * Puts the data of the given image into a Mat taken from the given pool,
+	 * like {@link #toMat(RandomAccessibleInterval)}. Give the Mat back to the
+	 * pool with {@link MatPool#release(Mat)} once it is no longer needed.
+	 * 
+	 * @param image
+	 *            The image which should be put into the Mat.
+	 * @param pool
+	 *            The pool to take the Mat from.
+	 * @return A Mat of the pool containing the data of the image.
+	 */
+	public static < T > Mat toMat( final RandomAccessibleInterval< T > image, final MatPool pool ) {
+		final int[] sizes = getMatSizes( Intervals.dimensionsAsLongArray( image ) );
+		return toMat( image, pool.acquire( sizes, getMatType( Util.getTypeFromInterval( image ) ) ) );
+	}
+
+	/**
+	 * Returns the type of the Mat created by
+	 * {@link #toMat(RandomAccessibleInterval)} for pixels of the given type.
+	 */
+	static int getMatType( final Object type ) {
+		if ( type instanceof ARGBType )
+			return CvType.CV_8UC4;
+		if ( type instanceof BitType )
+			return CvType.CV_8UC1;
+		if ( type instanceof RealType && !isPrimitiveType( type ) )
+			return getDepth( ( RealType< ? > ) type );
+		return getCvType( type );
+	}
+
+	/**
+	 * Whether the given Mat has the given sizes and type.
+	 */
+	static boolean hasLayout( final Mat mat, final int[] sizes, final int cvType ) {
+		if ( mat.type() != cvType || mat.dims() != sizes.length )
+			return false;
+		for ( int d = 0; d < sizes.length; d++ )
+			if ( mat.size( d ) != sizes[ d ] )
+				return false;
+		return true;
+	}
+
+	/**
+	 * Creates an OpenCV Mat matrix containing data from the given image,
+	 * copying the pixels with the given {@link TaskExecutor}.
+	 * 
+	 * @see #toMat(RandomAccessibleInterval)
+	 */
+	public static < T > Mat toMat(
+			final RandomAccessibleInterval< T > image, final TaskExecutor taskExecutor ) {
+		return Parallelization.runWithExecutor( taskExecutor, () -> toMat( image ) );
+	}
+
+	/**
+	 * Creates a multi-channel OpenCV Mat matrix containing data from the given
+	 * image, whose last dimension holds the channels. This is the inverse of
+	 * {@link MatToImgConverter#convert(Mat)} for multi-channel Mats: e.g. an
+	 * {@link UnsignedByteType} image of size {@code X x Y x 3} becomes a
+	 * {@link CvType#CV_8UC3} Mat of size {@code Y x X}.
+	 * 
+	 * @param image
+	 *            The image which should be put into the Mat.
+	 * @return A Mat containing the data of the image.
+	 */
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	public static Mat toMultiChannelMat( final RandomAccessibleInterval< ? > image ) {
+		final int n = image.numDimensions();
+		if ( n < 3 )
+			throw new IllegalArgumentException( "Multi-channel images need at least 3 dimensions, the last one being the channels" );
+		final long channels = image.dimension( n - 1 );
+		if ( channels == 1 )
+			return toMat( Views.hyperSlice( image, n - 1, image.min( n - 1 ) ) );
+		if ( channels > CvType.CV_CN_MAX )
+			throw new IllegalArgumentException( "OpenCV supports at most " + CvType.CV_CN_MAX + " channels" );
+		final int depth = CvType.depth( getCvType( Util.getTypeFromInterval( image ) ) );
+		final long[] shape = Arrays.copyOf( Intervals.dimensionsAsLongArray( image ), n - 1 );
+		final Mat mat = createMat( shape, CvType.makeType( depth, ( int ) channels ) );
+		final RandomAccessibleInterval interleaved = MatToImgConverter.wrap( mat );
+		copyFromTo( ( RandomAccessibleInterval ) image, Views.moveAxis( interleaved, 0, n - 1 ) );
+		return mat;
+	}
+
+	/**
+	 * Creates a single channel OpenCV Mat of the given depth containing the
+	 * pixels of the image scaled by {@code alpha} and offset by {@code beta},
+	 * rounded and saturated like {@code Mat.convertTo} does.
+	 * 
+	 * @param image
+	 *            The image which should be put into the Mat.
+	 * @param depth
+	 *            The depth of the Mat, e.g. {@link CvType#CV_32F}.
+	 * @param alpha
+	 *            The scale factor.
+	 * @param beta
+	 *            The offset added to the scaled values.
+	 * @return A Mat containing the converted data of the image.
+	 * @throws IllegalArgumentException
+	 *             if the depth has several channels or half precision.
+	 */
+	public static Mat toMat( final RandomAccessibleInterval< ? extends RealType< ? > > image,
+			final int depth, final double alpha, final double beta ) {
+		if ( CvType.channels( depth ) != 1 )
+			throw new IllegalArgumentException( "Only single channel depths are supported: " + CvType.typeToString( depth ) );
+		if ( CvType.depth( depth ) == CvType.CV_16F )
+			throw new IllegalArgumentException( "Half precision depths are not supported: " + CvType.typeToString( depth ) );
+		final Mat mat = createMat( Intervals.dimensionsAsLongArray( image ), CvType.depth( depth ) );
+		convertToMat( image, mat, alpha, beta );
+		return mat;
+	}
+
+	/**
+	 * Returns the OpenCV depth used for pixels of a {@link RealType} that has
+	 * no exact counterpart in OpenCV. Integer types get the smallest integer
+	 * depth that holds their range, e.g. {@link CvType#CV_16U} for
+	 * {@link Unsigned12BitType}, and integer types exceeding the range of
+	 * {@link CvType#CV_32S}, such as {@link UnsignedIntType} or
+	 * {@link LongType}, always get {@link CvType#CV_64F}. All other types get
+	 * {@link CvType#CV_32F} or {@link CvType#CV_64F}, depending on their
+	 * precision.
+	 */
+	public static int getDepth( final RealType< ? > type ) {
+		if ( type instanceof IntegerType ) {
+			final double min = type.getMinValue();
+			final double max = type.getMaxValue();
+			if ( min >= 0 && max <= 0xff ) return CvType.CV_8U;
+			if ( min >= Byte.MIN_VALUE && max <= Byte.MAX_VALUE ) return CvType.CV_8S;
+			if ( min >= 0 && max <= 0xffff ) return CvType.CV_16U;
+			if ( min >= Short.MIN_VALUE && max <= Short.MAX_VALUE ) return CvType.CV_16S;
+			if ( min >= Integer.MIN_VALUE && max <= Integer.MAX_VALUE ) return CvType.CV_32S;
+			return CvType.CV_64F;
+		}
+		return type.getBitsPerPixel() <= 32 ? CvType.CV_32F : CvType.CV_64F;
+	}
+
+	/**
+	 * Writes {@code alpha * pixel + beta} to the wrapped Mat, saturating the
+	 * values if the Mat has an integer depth.
+	 */
+	@SuppressWarnings( "unchecked" )
+	private static void convertToMat( final RandomAccessibleInterval< ? extends RealType< ? > > image,
+			final Mat mat, final double alpha, final double beta ) {
+		final RandomAccessibleInterval< ? extends RealType< ? > > target =
+				( RandomAccessibleInterval< ? extends RealType< ? > > ) wrap( mat, image );
+		if ( mat.depth() == CvType.CV_32F || mat.depth() == CvType.CV_64F ) {
+			LoopBuilder.setImages( image, target ).multiThreaded().forEachPixel(
+					( i, o ) -> o.setReal( i.getRealDouble() * alpha + beta ) );
+		} else {
+			final RealType< ? > type = Util.getTypeFromInterval( target );
+			final double min = type.getMinValue();
+			final double max = type.getMaxValue();
+			LoopBuilder.setImages( image, target ).multiThreaded().forEachPixel(
+					( i, o ) -> o.setReal( Math.min( Math.max( Math.rint( i.getRealDouble() * alpha + beta ), min ), max ) ) );
 		}
-		if ( type instanceof ByteType ) { return getByteMat( ( RandomAccessibleInterval< ByteType > ) image ); }
-		if ( type instanceof UnsignedShortType) { return getUnsignedShortMat( ( RandomAccessibleInterval<UnsignedShortType> ) image ); }
-		if ( type instanceof ShortType ) { return getShortMat( ( RandomAccessibleInterval<ShortType> ) image ); }
-		if ( type instanceof IntType ) { return getIntMat( ( RandomAccessibleInterval< IntType > ) image ); }
-		if ( type instanceof FloatType ) { return getFloatMat( ( RandomAccessibleInterval< FloatType > ) image ); }
-		if ( type instanceof DoubleType ) { return getDoubleMat( ( RandomAccessibleInterval< DoubleType > ) image ); }
-		throw new IllegalArgumentException( "Unsupported image type: " + type.getClass().getName() );
 	}
 
 	/**
@@ -125,9 +479,7 @@ public class ImgToMatConverter extends AbstractConverter< RandomAccessibleInterv
 	 */
 	public static Mat getUnsignedByteMat(
 			final RandomAccessibleInterval< UnsignedByteType > image ) {
-		int[] shape = Intervals.dimensionsAsIntArray( image );
-		byte[] data = toUByteArray( image );
-		return createByteMat( shape, CvType.CV_8UC1, data );
+		return toMat( image, CvType.CV_8UC1 );
 
 	}
 
@@ -140,21 +492,7 @@ public class ImgToMatConverter extends AbstractConverter< RandomAccessibleInterv
 	 */
 	public static Mat getByteMat(
 			final RandomAccessibleInterval< ByteType > image ) {
-		int[] shape = Intervals.dimensionsAsIntArray( image );
-		byte[] data = toByteArray( image );
-		return createByteMat( shape, CvType.CV_8SC1, data );
-	}
-
-	private static Mat createByteMat( final int[] shape, final int cvType, final byte[] data ) {
-		// We need to invert X and Y in order to get the right orientation.
-		if ( shape.length == 2 ) {
-			return new Mat( shape[ 1 ], shape[ 0 ], cvType, new BytePointer( data ) );
-		} else {
-			int[] reshape = shape.clone();
-			reshape[ 0 ] = shape[ 1 ];
-			reshape[ 1 ] = shape[ 0 ];
-			return new Mat( reshape.length, reshape, cvType, new BytePointer( data ) );
-		}
+		return toMat( image, CvType.CV_8SC1 );
 	}
 
 	/**
@@ -166,21 +504,7 @@ public class ImgToMatConverter extends AbstractConverter< RandomAccessibleInterv
 	 */
 	public static Mat getIntMat(
 			final RandomAccessibleInterval< IntType > image ) {
-		int[] shape = Intervals.dimensionsAsIntArray( image );
-		int[] data = toIntArray( image );
-		return createIntMat( shape, data );
-	}
-
-	private static Mat createIntMat( final int[] shape, final int[] data ) {
-		// We need to invert X and Y in order to get the right orientation.
-		if ( shape.length == 2 ) {
-			return new Mat( shape[ 1 ], shape[ 0 ], CvType.CV_32SC1, new IntPointer( data ) );
-		} else {
-			int[] reshape = shape.clone();
-			reshape[ 0 ] = shape[ 1 ];
-			reshape[ 1 ] = shape[ 0 ];
-			return new Mat( reshape.length, reshape, CvType.CV_32SC1, new IntPointer( data ) );
-		}
+		return toMat( image, CvType.CV_32SC1 );
 	}
 
 	/**
@@ -192,9 +516,7 @@ public class ImgToMatConverter extends AbstractConverter< RandomAccessibleInterv
 	 */
 	public static Mat getShortMat(
 			final RandomAccessibleInterval< ShortType > image ) {
-		int[] shape = Intervals.dimensionsAsIntArray( image );
-		short[] data = toShortArray( image );
-		return createShortMat( shape, CvType.CV_16SC1, data );
+		return toMat( image, CvType.CV_16SC1 );
 	}
 
 	/**
@@ -207,21 +529,7 @@ public class ImgToMatConverter extends AbstractConverter< RandomAccessibleInterv
 	 */
 	public static Mat getUnsignedShortMat(
 			final RandomAccessibleInterval< UnsignedShortType > image ) {
-		int[] shape = Intervals.dimensionsAsIntArray( image );
-		short[] data = toUShortArray( image );
-		return createShortMat( shape, CvType.CV_16UC1, data );
-	}
-
-	private static Mat createShortMat( final int[] shape, final int cvType, final short[] data ) {
-		// We need to invert X and Y in order to get the right orientation.
-		if ( shape.length == 2 ) {
-			return new Mat( shape[ 1 ], shape[ 0 ], cvType, new ShortPointer( data ) );
-		} else {
-			int[] reshape = shape.clone();
-			reshape[ 0 ] = shape[ 1 ];
-			reshape[ 1 ] = shape[ 0 ];
-			return new Mat( reshape.length, reshape, cvType, new ShortPointer( data ) );
-		}
+		return toMat( image, CvType.CV_16UC1 );
 	}
 
 	/**
@@ -233,21 +541,7 @@ public class ImgToMatConverter extends AbstractConverter< RandomAccessibleInterv
 	 */
 	public static Mat getFloatMat(
 			final RandomAccessibleInterval< FloatType > image ) {
-		int[] shape = Intervals.dimensionsAsIntArray( image );
-		float[] data = toFloatArray( image );
-		return createFloatMat( shape, data );
-	}
-
-	private static Mat createFloatMat( final int[] shape, final float[] data ) {
-		// We need to invert X and Y in order to get the right orientation.
-		if ( shape.length == 2 ) {
-			return new Mat( shape[ 1 ], shape[ 0 ], CvType.CV_32FC1, new FloatPointer( data ) );
-		} else {
-			int[] reshape = shape.clone();
-			reshape[ 0 ] = shape[ 1 ];
-			reshape[ 1 ] = shape[ 0 ];
-			return new Mat( reshape.length, reshape, CvType.CV_32FC1, new FloatPointer( data ) );
-		}
+		return toMat( image, CvType.CV_32FC1 );
 	}
 
 	/**
@@ -259,67 +553,481 @@ public class ImgToMatConverter extends AbstractConverter< RandomAccessibleInterv
 	 */
 	public static Mat getDoubleMat(
 			final RandomAccessibleInterval< DoubleType > image ) {
-		int[] shape = Intervals.dimensionsAsIntArray( image );
-		double[] data = toDoubleArray( image );
-		return createDoubleMat( shape, data );
+		return toMat( image, CvType.CV_64FC1 );
+	}
+
+	/**
+	 * Creates a two channel OpenCV Mat matrix of type {@link CvType#CV_32FC2}
+	 * containing the real and imaginary parts of the given complex image, as
+	 * expected by {@code dft}.
+	 * 
+	 * @param image
+	 *            The image which should be put into the Mat.
+	 * @return A Mat containing the data of the image.
+	 */
+	public static Mat getComplexFloatMat(
+			final RandomAccessibleInterval< ComplexFloatType > image ) {
+		return toMat( image, CvType.CV_32FC2 );
+	}
+
+	/**
+	 * Creates a two channel OpenCV Mat matrix of type {@link CvType#CV_64FC2}
+	 * containing the real and imaginary parts of the given complex image.
+	 * 
+	 * @param image
+	 *            The image which should be put into the Mat.
+	 * @return A Mat containing the data of the image.
+	 */
+	public static Mat getComplexDoubleMat(
+			final RandomAccessibleInterval< ComplexDoubleType > image ) {
+		return toMat( image, CvType.CV_64FC2 );
+	}
+
+	/**
+	 * Creates a four channel OpenCV Mat matrix of type {@link CvType#CV_8UC4}
+	 * containing the given color image in BGRA channel order, OpenCV's
+	 * default for color images with alpha.
+	 * 
+	 * @param image
+	 *            The image which should be put into the Mat.
+	 * @return A Mat containing the data of the image.
+	 */
+	public static Mat getARGBMat(
+			final RandomAccessibleInterval< ARGBType > image ) {
+		return toColorMat( image, 4 );
+	}
+
+	/**
+	 * Creates a three channel OpenCV Mat matrix of type {@link CvType#CV_8UC3}
+	 * containing the given color image in BGR channel order. The alpha
+	 * channel is dropped.
+	 * 
+	 * @param image
+	 *            The image which should be put into the Mat.
+	 * @return A Mat containing the data of the image.
+	 */
+	public static Mat getBGRMat(
+			final RandomAccessibleInterval< ARGBType > image ) {
+		return toColorMat( image, 3 );
+	}
+
+	/**
+	 * Copies a color image into a BGR or BGRA Mat.
+	 */
+	private static Mat toColorMat( final RandomAccessibleInterval< ARGBType > image, final int channels ) {
+		final Mat mat = createMat( Intervals.dimensionsAsLongArray( image ), CvType.makeType( CvType.CV_8U, channels ) );
+		putColors( image, mat );
+		return mat;
 	}
 
-	private static Mat createDoubleMat( final int[] shape, final double[] data ) {
-		// We need to invert X and Y in order to get the right orientation.
-		if ( shape.length == 2 ) {
-			return new Mat( shape[ 1 ], shape[ 0 ], CvType.CV_64FC1, new DoublePointer( data ) );
+	private static void putColors( final RandomAccessibleInterval< ARGBType > image, final Mat mat ) {
+		final int channels = mat.channels();
+		final Object array = getStorageArray( image );
+		if ( channels == 4 && array instanceof int[] && mat.isContinuous() && ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN ) {
+			// 0xAARRGGBB is stored as B, G, R, A in little endian byte order already
+			new IntPointer( mat.data() ).put( ( int[] ) array, 0, ( int ) mat.total() );
+			return;
+		}
+		final RandomAccessibleInterval< UnsignedByteType > interleaved = MatToImgConverter.wrapUnsignedByteImg( mat );
+		final RandomAccessibleInterval< UnsignedByteType > b = fit( Views.hyperSlice( interleaved, 0, 0 ), image );
+		final RandomAccessibleInterval< UnsignedByteType > g = fit( Views.hyperSlice( interleaved, 0, 1 ), image );
+		final RandomAccessibleInterval< UnsignedByteType > r = fit( Views.hyperSlice( interleaved, 0, 2 ), image );
+		if ( channels == 4 ) {
+			final RandomAccessibleInterval< UnsignedByteType > a = fit( Views.hyperSlice( interleaved, 0, 3 ), image );
+			LoopBuilder.setImages( image, b, g, r, a ).multiThreaded().forEachPixel( ( argb, bo, go, ro, ao ) -> {
+				final int value = argb.get();
+				bo.set( ARGBType.blue( value ) );
+				go.set( ARGBType.green( value ) );
+				ro.set( ARGBType.red( value ) );
+				ao.set( ARGBType.alpha( value ) );
+			} );
 		} else {
-			int[] reshape = shape.clone();
-			reshape[ 0 ] = shape[ 1 ];
-			reshape[ 1 ] = shape[ 0 ];
-			return new Mat( reshape.length, reshape, CvType.CV_64FC1, new DoublePointer( data ) );
+			LoopBuilder.setImages( image, b, g, r ).multiThreaded().forEachPixel( ( argb, bo, go, ro ) -> {
+				final int value = argb.get();
+				bo.set( ARGBType.blue( value ) );
+				go.set( ARGBType.green( value ) );
+				ro.set( ARGBType.red( value ) );
+			} );
+		}
+	}
+
+	/**
+	 * Creates an OpenCV mask, a {@link CvType#CV_8UC1} Mat holding 255 for set
+	 * and 0 for unset pixels of the given binary image.
+	 * 
+	 * @param image
+	 *            The mask which should be put into the Mat.
+	 * @return A Mat containing the mask.
+	 */
+	public static Mat toMaskMat( final RandomAccessibleInterval< BitType > image ) {
+		final Mat mat = createMat( Intervals.dimensionsAsLongArray( image ), CvType.CV_8UC1 );
+		putMask( image, mat );
+		return mat;
+	}
+
+	private static void putMask( final RandomAccessibleInterval< BitType > image, final Mat mat ) {
+		final Object array = getStorageArray( image );
+		if ( array instanceof long[] && mat.isContinuous() ) {
+			unpackBits( ( long[] ) array, mat );
+		} else {
+			final RandomAccessibleInterval< UnsignedByteType > target = fit( MatToImgConverter.wrapUnsignedByteImg( mat ), image );
+			LoopBuilder.setImages( image, target ).multiThreaded().forEachPixel( ( i, o ) -> o.set( i.get() ? 0xff : 0 ) );
+		}
+	}
+
+	/**
+	 * Unpacks the bits of a {@link BitType} image, pixel {@code i} being bit
+	 * {@code i % 64} of word {@code i / 64}, into the bytes of a continuous
+	 * Mat. Chunks of words are unpacked concurrently.
+	 */
+	private static void unpackBits( final long[] words, final Mat mat ) {
+		final long numPixels = mat.total();
+		final int numWords = ( int ) ( ( numPixels + 63 ) / 64 );
+		final int numChunks = ( numWords + WORDS_PER_CHUNK - 1 ) / WORDS_PER_CHUNK;
+		final List< Integer > chunks = new ArrayList<>( numChunks );
+		for ( int i = 0; i < numChunks; i++ )
+			chunks.add( i );
+		final BytePointer data = mat.data();
+		Parallelization.getTaskExecutor().forEach( chunks, chunk -> {
+			final int firstWord = chunk * WORDS_PER_CHUNK;
+			final int length = ( int ) Math.min( numPixels - firstWord * 64L, WORDS_PER_CHUNK * 64 );
+			final byte[] bytes = new byte[ length ];
+			for ( int i = 0; i < length; i += 64 ) {
+				final long word = words[ firstWord + ( i >>> 6 ) ];
+				final int end = Math.min( 64, length - i );
+				for ( int b = 0; b < end; b++ )
+					bytes[ i + b ] = ( byte ) -( ( word >>> b ) & 1 );
+			}
+			new BytePointer( data ).position( firstWord * 64L ).put( bytes, 0, length );
+		} );
+	}
+
+	/**
+	 * Allocates a Mat of the given type and copies the pixels of the image
+	 * into it.
+	 */
+	private static < T extends NativeType< T > > Mat toMat(
+			final RandomAccessibleInterval< T > image, final int cvType ) {
+		final Mat mat = createMat( Intervals.dimensionsAsLongArray( image ), cvType );
+		copyToMat( image, mat );
+		return mat;
+	}
+
+	/**
+	 * Allocates a Mat with the same memory layout as an image of the given
+	 * dimensions, see {@link #getMatSizes(long[])}.
+	 */
+	static Mat createMat( final long[] dimensions, final int cvType ) {
+		final int[] sizes = getMatSizes( dimensions );
+		return new Mat( sizes.length, sizes, cvType );
+	}
+
+	@SuppressWarnings( "unchecked" )
+	private static < T extends NativeType< T > > void copyToMat(
+			final RandomAccessibleInterval< T > image, final Mat mat ) {
+		final Object array = mat.isContinuous() ? getStorageArray( image ) : null;
+		if ( array != null ) {
+			// The image is a flat primitive array already, copy it in bulk.
+			putArray( mat, array );
+		} else if ( image instanceof AbstractCellImg && mat.isContinuous() ) {
+			copyCellsToMat( ( AbstractCellImg< T, ?, ?, ? > ) image, mat );
+		} else {
+			copyFromTo( image, ( RandomAccessibleInterval< T > ) wrap( mat, image ) );
+		}
+	}
+
+	/**
+	 * Wraps a Mat created for the given image as an image of the same
+	 * dimensions, one pixel per element of the Mat, i.e. per channel unless
+	 * the image is complex.
+	 */
+	private static RandomAccessibleInterval< ? > wrap( final Mat mat, final RandomAccessibleInterval< ? > image ) {
+		final Object type = Util.getTypeFromInterval( image );
+		if ( type instanceof ComplexFloatType )
+			return fit( MatToImgConverter.wrapComplexFloatImg( mat ), image );
+		if ( type instanceof ComplexDoubleType )
+			return fit( MatToImgConverter.wrapComplexDoubleImg( mat ), image );
+		return fit( MatToImgConverter.wrap( mat ), image );
+	}
+
+	/**
+	 * Drops the row dimension a Mat created for a one dimensional image has in
+	 * addition, see {@link #getMatSizes(long[])}.
+	 */
+	private static < T > RandomAccessibleInterval< T > fit( final RandomAccessibleInterval< T > wrapped, final RandomAccessibleInterval< ? > image ) {
+		return image.numDimensions() == 1 ? Views.hyperSlice( wrapped, wrapped.numDimensions() - 1, 0 ) : wrapped;
+	}
+
+	/**
+	 * Copies a {@link CellImg}, or a cached cell image, cell by cell, in
+	 * parallel.
+	 */
+	private static < T extends NativeType< T >, C extends Cell< ? > > void copyCellsToMat(
+			final AbstractCellImg< T, ?, C, ? > image, final Mat mat ) {
+		final RandomAccessible< C > cells = image.getCells();
+		final long[] gridDimensions = image.getCellGrid().getGridDimensions();
+		final long numCells = Intervals.numElements( gridDimensions );
+		if ( numCells > Integer.MAX_VALUE )
+			throw new IllegalArgumentException( "Too many cells: " + numCells );
+		final List< Long > indices = new ArrayList<>( ( int ) numCells );
+		for ( long i = 0; i < numCells; i++ )
+			indices.add( i );
+		final long[] dimensions = Intervals.dimensionsAsLongArray( image );
+		Parallelization.getTaskExecutor().forEach( indices, index -> {
+			final long[] position = new long[ gridDimensions.length ];
+			IntervalIndexer.indexToPosition( index, gridDimensions, position );
+			final RandomAccess< C > access = cells.randomAccess();
+			access.setPosition( position );
+			final C cell = access.get();
+			if ( cell.getData() instanceof ArrayDataAccess )
+				putCell( mat, cell, dimensions );
+			else
+				copyCell( image, cell, mat );
+		} );
+	}
+
+	/**
+	 * Puts the rows of a cell backed by a primitive array into the matching
+	 * rectangle of a continuous Mat holding the whole image.
+	 */
+	private static void putCell( final Mat mat, final Cell< ? > cell, final long[] imageDimensions ) {
+		final Object array = ( ( ArrayDataAccess< ? > ) cell.getData() ).getCurrentStorageArray();
+		final int n = imageDimensions.length;
+		final long[] min = new long[ n ];
+		final long[] dimensions = new long[ n ];
+		cell.min( min );
+		cell.dimensions( dimensions );
+		// complex pixels take two elements
+		final int channels = mat.channels();
+		final long[] strides = new long[ n ];
+		strides[ 0 ] = channels;
+		for ( int d = 1; d < n; d++ )
+			strides[ d ] = strides[ d - 1 ] * imageDimensions[ d - 1 ];
+		final int rowLength = ( int ) dimensions[ 0 ] * channels;
+		final int numRows = ( int ) ( Intervals.numElements( dimensions ) / dimensions[ 0 ] );
+		final Pointer pointer = getPointer( mat, array );
+		final long[] position = new long[ n ];
+		long offset = IntervalIndexer.positionToIndex( min, imageDimensions ) * channels;
+		for ( int row = 0; row < numRows; row++ ) {
+			put( pointer, offset, array, row * rowLength, rowLength );
+			for ( int d = 1; d < n; d++ ) {
+				if ( ++position[ d ] < dimensions[ d ] ) {
+					offset += strides[ d ];
+					break;
+				}
+				position[ d ] = 0;
+				offset -= ( dimensions[ d ] - 1 ) * strides[ d ];
+			}
+		}
+	}
+
+	/**
+	 * Copies a cell that is not backed by a primitive array pixel by pixel,
+	 * wrapping only the rows of the Mat covered by each XY plane of the cell.
+	 */
+	@SuppressWarnings( "unchecked" )
+	private static < T extends NativeType< T > > void copyCell( final RandomAccessibleInterval< T > image, final Cell< ? > cell, final Mat mat ) {
+		final RandomAccessibleInterval< T > source = image.numDimensions() == 1 ? Views.addDimension( image, 0, 0 ) : image;
+		final int n = source.numDimensions();
+		final long[] dimensions = Intervals.dimensionsAsLongArray( source );
+		final long[] min = new long[ n ];
+		final long[] size = new long[ n ];
+		Arrays.fill( size, 1 );
+		for ( int d = 0; d < image.numDimensions(); d++ ) {
+			min[ d ] = cell.min( d );
+			size[ d ] = cell.dimension( d );
+		}
+		final int[] sizes = { ( int ) size[ 1 ], ( int ) dimensions[ 0 ] };
+		final long[] planes = Arrays.copyOfRange( size, 2, n );
+		final long numPlanes = Intervals.numElements( planes );
+		final long[] plane = new long[ n - 2 ];
+		final long[] position = min.clone();
+		position[ 0 ] = 0;
+		for ( long p = 0; p < numPlanes; p++ ) {
+			IntervalIndexer.indexToPosition( p, planes, plane );
+			RandomAccessibleInterval< T > rows = source;
+			for ( int d = n - 1; d >= 2; d-- ) {
+				position[ d ] = min[ d ] + plane[ d - 2 ];
+				rows = Views.hyperSlice( rows, d, position[ d ] );
+			}
+			final long offset = IntervalIndexer.positionToIndex( position, dimensions ) * mat.elemSize();
+			final Interval interval = Intervals.createMinSize( min[ 0 ], min[ 1 ], size[ 0 ], size[ 1 ] );
+			try (Mat band = new Mat( sizes.length, sizes, mat.type(), mat.data().position( offset ) )) {
+				final RandomAccessibleInterval< T > target = ( RandomAccessibleInterval< T > ) wrap( band, rows );
+				LoopBuilder.setImages( Views.interval( rows, interval ), Views.interval( target, Intervals.createMinSize( min[ 0 ], 0, size[ 0 ], size[ 1 ] ) ) )
+						.forEachPixel( ( i, o ) -> o.set( i ) );
+			}
+		}
+	}
+
+	/**
+	 * Returns the primitive array backing the given image, or {@code null} if
+	 * the image is not an {@link ArrayImg} or single plane {@link PlanarImg}
+	 * over a Java array.
+	 */
+	private static Object getStorageArray( final RandomAccessibleInterval< ? > image ) {
+		final Object access;
+		if ( image instanceof ArrayImg )
+			access = ( ( ArrayImg< ?, ? > ) image ).update( null );
+		else if ( image instanceof PlanarImg && ( ( PlanarImg< ?, ? > ) image ).numSlices() == 1 )
+			access = ( ( PlanarImg< ?, ? > ) image ).getPlane( 0 );
+		else
+			return null;
+		if ( !( access instanceof ArrayDataAccess ) )
+			return null;
+		return ( ( ArrayDataAccess< ? > ) access ).getCurrentStorageArray();
+	}
+
+	/**
+	 * Puts the elements of a primitive array, starting at the given offset,
+	 * into a Mat of the given dimensions and type, (re)allocated as by
+	 * {@link Mat#create}.
+	 */
+	static Mat arrayToMat( final Object array, final int offset, final long[] dimensions, final int cvType, final Mat dst ) {
+		final int[] sizes = getMatSizes( dimensions );
+		NativeMemoryBudget.create( dst, sizes, cvType );
+		putArray( dst, array, offset );
+		return dst;
+	}
+
+	private static void putArray( final Mat mat, final Object array ) {
+		putArray( mat, array, 0 );
+	}
+
+	private static void putArray( final Mat mat, final Object array, final int offset ) {
+		put( getPointer( mat, array ), 0, array, offset, ( int ) ( mat.total() * mat.channels() ) );
+	}
+
+	/**
+	 * Returns a pointer to the data of the Mat, typed like the given array.
+	 */
+	private static Pointer getPointer( final Mat mat, final Object array ) {
+		if ( array instanceof byte[] )
+			return new BytePointer( mat.data() );
+		if ( array instanceof short[] )
+			return new ShortPointer( mat.data() );
+		if ( array instanceof int[] )
+			return new IntPointer( mat.data() );
+		if ( array instanceof float[] )
+			return new FloatPointer( mat.data() );
+		if ( array instanceof double[] )
+			return new DoublePointer( mat.data() );
+		throw new IllegalArgumentException( "Unsupported storage array: " + array.getClass().getName() );
+	}
+
+	/**
+	 * Copies {@code length} elements of the array, starting at {@code offset},
+	 * to the element at {@code position} of a pointer returned by
+	 * {@link #getPointer(Mat, Object)}.
+	 */
+	private static void put( final Pointer pointer, final long position, final Object array, final int offset, final int length ) {
+		pointer.position( position );
+		if ( array instanceof byte[] )
+			( ( BytePointer ) pointer ).put( ( byte[] ) array, offset, length );
+		else if ( array instanceof short[] )
+			( ( ShortPointer ) pointer ).put( ( short[] ) array, offset, length );
+		else if ( array instanceof int[] )
+			( ( IntPointer ) pointer ).put( ( int[] ) array, offset, length );
+		else if ( array instanceof float[] )
+			( ( FloatPointer ) pointer ).put( ( float[] ) array, offset, length );
+		else
+			( ( DoublePointer ) pointer ).put( ( double[] ) array, offset, length );
+	}
+
+	/**
+	 * Returns the OpenCV type of a Mat holding pixels of the given imglib2
+	 * type. This is a single channel type, except for the two channel types of
+	 * {@link ComplexFloatType} and {@link ComplexDoubleType}.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the type is not supported.
+	 */
+	public static int getCvType( final Object type ) {
+		if ( type instanceof UnsignedByteType ) return CvType.CV_8UC1;
+		if ( type instanceof ByteType ) return CvType.CV_8SC1;
+		if ( type instanceof UnsignedShortType ) return CvType.CV_16UC1;
+		if ( type instanceof ShortType ) return CvType.CV_16SC1;
+		if ( type instanceof IntType ) return CvType.CV_32SC1;
+		if ( type instanceof FloatType ) return CvType.CV_32FC1;
+		if ( type instanceof DoubleType ) return CvType.CV_64FC1;
+		if ( type instanceof ComplexFloatType ) return CvType.CV_32FC2;
+		if ( type instanceof ComplexDoubleType ) return CvType.CV_64FC2;
+		throw new IllegalArgumentException( "Unsupported image type: " + type.getClass().getName() );
+	}
+
+	/**
+	 * Whether pixels of the given type are stored in primitive arrays exactly
+	 * like in a Mat of the type returned by {@link #getCvType(Object)}.
+	 */
+	static boolean isPrimitiveType( final Object type ) {
+		return type instanceof UnsignedByteType || type instanceof ByteType ||
+				type instanceof UnsignedShortType || type instanceof ShortType ||
+				type instanceof IntType || type instanceof FloatType || type instanceof DoubleType;
+	}
+
+	/**
+	 * Returns the sizes of a Mat with the same memory layout as an image of
+	 * the given dimensions. OpenCV stores the last size contiguously while
+	 * imglib2 stores the first dimension contiguously, so the order of the
+	 * dimensions is reversed. One dimensional images become a single row.
+	 */
+	static int[] getMatSizes( final long[] dimensions ) {
+		if ( dimensions.length == 1 )
+			return new int[] { 1, ( int ) dimensions[ 0 ] };
+		final int[] sizes = new int[ dimensions.length ];
+		for ( int d = 0; d < dimensions.length; d++ ) {
+			final long size = dimensions[ dimensions.length - 1 - d ];
+			if ( size > Integer.MAX_VALUE )
+				throw new IllegalArgumentException( "Dimension " + ( dimensions.length - 1 - d ) + " is too large for a Mat: " + size );
+			sizes[ d ] = ( int ) size;
 		}
+		return sizes;
 	}
 
 	public static byte[] toUByteArray( RandomAccessibleInterval< UnsignedByteType > image ) {
-		byte[] outputArray = new byte[ ( int ) Intervals.numElements( image ) ];
+		byte[] outputArray = new byte[ getArrayLength( Intervals.numElements( image ) ) ];
 		long[] shape = Intervals.dimensionsAsLongArray( image );
 		copyFromTo( image, ArrayImgs.unsignedBytes( outputArray, shape ) );
 		return outputArray;
 	}
 
 	public static byte[] toByteArray( RandomAccessibleInterval< ByteType > image ) {
-		byte[] outputArray = new byte[ ( int ) Intervals.numElements( image ) ];
+		byte[] outputArray = new byte[ getArrayLength( Intervals.numElements( image ) ) ];
 		long[] shape = Intervals.dimensionsAsLongArray( image );
 		copyFromTo( image, ArrayImgs.bytes( outputArray, shape ) );
 		return outputArray;
 	}
 
 	public static short[] toUShortArray( RandomAccessibleInterval< UnsignedShortType > image ) {
-		short[] outputArray = new short[ ( int ) Intervals.numElements( image ) ];
+		short[] outputArray = new short[ getArrayLength( Intervals.numElements( image ) ) ];
 		long[] shape = Intervals.dimensionsAsLongArray( image );
 		copyFromTo( image, ArrayImgs.unsignedShorts( outputArray, shape ) );
 		return outputArray;
 	}
 
 	public static short[] toShortArray( RandomAccessibleInterval< ShortType > image ) {
-		short[] outputArray = new short[ ( int ) Intervals.numElements( image ) ];
+		short[] outputArray = new short[ getArrayLength( Intervals.numElements( image ) ) ];
 		long[] shape = Intervals.dimensionsAsLongArray( image );
 		copyFromTo( image, ArrayImgs.shorts( outputArray, shape ) );
 		return outputArray;
 	}
 
 	public static int[] toIntArray( RandomAccessibleInterval< IntType > image ) {
-		int[] outputArray = new int[ ( int ) Intervals.numElements( image ) ];
+		int[] outputArray = new int[ getArrayLength( Intervals.numElements( image ) ) ];
 		long[] shape = Intervals.dimensionsAsLongArray( image );
 		copyFromTo( image, ArrayImgs.ints( outputArray, shape ) );
 		return outputArray;
 	}
 
 	public static float[] toFloatArray( RandomAccessibleInterval< FloatType > image ) {
-		float[] outputArray = new float[ ( int ) Intervals.numElements( image ) ];
+		float[] outputArray = new float[ getArrayLength( Intervals.numElements( image ) ) ];
 		long[] shape = Intervals.dimensionsAsLongArray( image );
 		copyFromTo( image, ArrayImgs.floats( outputArray, shape ) );
 		return outputArray;
 	}
 
 	public static double[] toDoubleArray( RandomAccessibleInterval< DoubleType > image ) {
-		double[] outputArray = new double[ ( int ) Intervals.numElements( image ) ];
+		double[] outputArray = new double[ getArrayLength( Intervals.numElements( image ) ) ];
 		long[] shape = Intervals.dimensionsAsLongArray( image );
 		copyFromTo( image, ArrayImgs.doubles( outputArray, shape ) );
 		return outputArray;
@@ -328,7 +1036,7 @@ public class ImgToMatConverter extends AbstractConverter< RandomAccessibleInterv
 	private static < T extends Type< T > > void copyFromTo(
 			RandomAccessibleInterval< T > source,
 			RandomAccessibleInterval< T > destination ) {
-		LoopBuilder.setImages( source, destination ).forEachPixel( ( i, o ) -> o.set( i ) );
+		LoopBuilder.setImages( source, destination ).multiThreaded().forEachPixel( ( i, o ) -> o.set( i ) );
 	}
 
 }
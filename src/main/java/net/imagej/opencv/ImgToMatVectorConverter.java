@@ -28,6 +28,10 @@
  */
 package net.imagej.opencv;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bytedeco.javacpp.PointerScope;
 import org.bytedeco.opencv.opencv_core.Mat;
 import org.bytedeco.opencv.opencv_core.MatVector;
 import org.scijava.Prioritized;
@@ -38,12 +42,17 @@ import org.scijava.log.LogService;
 import org.scijava.plugin.Plugin;
 
 import net.imglib2.RandomAccessibleInterval;
-import net.imglib2.util.Intervals;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.parallel.Parallelization;
+import net.imglib2.parallel.TaskExecutor;
+import net.imglib2.util.Util;
 import net.imglib2.view.Views;
 
 /**
- * Only 3 dimensional, 1 channel images are supported here.
- * For 2 dimensions see {@link ImgToMatConverter}
+ * Converts images with 3 or more dimensions, 1 channel to a vector of 2D Mats,
+ * one per XY plane. For 2 dimensions see {@link ImgToMatConverter}
  * 
  * @author G.Turek for OpenCV version 4.1.2
  */
@@ -70,18 +79,121 @@ public class ImgToMatVectorConverter extends AbstractConverter< RandomAccessible
 	@SuppressWarnings( "unchecked" )
 	@Override
 	public < T > T convert( Object o, Class< T > type ) {
-		RandomAccessibleInterval< T > img = ( RandomAccessibleInterval< T > ) o;
-		int[] dims = Intervals.dimensionsAsIntArray( img );
-		if ( dims.length < 3 )
+		return ( T ) toMatVector( ( RandomAccessibleInterval< ? > ) o );
+	}
+
+	/**
+	 * Creates a vector of OpenCV Mats, one for each XY plane of the given
+	 * image. All dimensions beyond X and Y are flattened into the plane index,
+	 * the third dimension varying fastest: an {@code X x Y x Z x T} image
+	 * becomes a vector of {@code Z * T} Mats, plane {@code z + Z * t} at index
+	 * {@code z + Z * t}. The planes are converted in parallel, using the
+	 * {@link TaskExecutor} of the current {@link Parallelization} context.
+	 * 
+	 * @see MatVectorToImgConverter#toImg(MatVector, long...)
+	 */
+	public static MatVector toMatVector( final RandomAccessibleInterval< ? > img ) {
+		return toMatVector( img, Parallelization.getTaskExecutor() );
+	}
+
+	/**
+	 * Creates a vector of OpenCV Mats, one for each XY plane of the given
+	 * image, see {@link #toMatVector(RandomAccessibleInterval)}, on the given
+	 * {@link TaskExecutor}.
+	 */
+	public static MatVector toMatVector( final RandomAccessibleInterval< ? > img, final TaskExecutor taskExecutor ) {
+		return toMatVector( img, taskExecutor, null );
+	}
+
+	/**
+	 * Creates a vector of OpenCV Mats, one for each XY plane of the given
+	 * image, see {@link #toMatVector(RandomAccessibleInterval)}. The memory of
+	 * all planes is reserved at once against the given budget.
+	 * 
+	 * @throws OutOfMemoryError
+	 *             if the planes do not fit into the budget.
+	 */
+	public static MatVector toMatVector( final RandomAccessibleInterval< ? > img, final NativeMemoryBudget budget ) {
+		return toMatVector( img, Parallelization.getTaskExecutor(), budget );
+	}
+
+	private static MatVector toMatVector( final RandomAccessibleInterval< ? > img, final TaskExecutor taskExecutor, final NativeMemoryBudget budget ) {
+		if ( img.numDimensions() < 3 )
 			throw new IllegalArgumentException( "Images with less than 3 dimensions are not supported here, use ImgToMatConverter" );
-		MatVector matVector = new MatVector( dims[ 2 ] );
-		ImgToMatConverter converter = new ImgToMatConverter();
-		for ( int i = 0; i < dims[2]; i++ ) {
-			RandomAccessibleInterval< T > ijSlice = Views.hyperSlice( img, dims.length - 1, i);
-			Mat mSlice = converter.convert( ijSlice, Mat.class );
-			matVector.put( i , mSlice);
+		if ( img.dimension( 0 ) == 0 || img.dimension( 1 ) == 0 )
+			throw new IllegalArgumentException( "Images with empty XY planes are not supported: " + Util.printInterval( img ) );
+		final long numPlanes = getNumPlanes( img );
+		if ( numPlanes > Integer.MAX_VALUE )
+			throw new IllegalArgumentException( "Too many planes: " + numPlanes );
+		final List< Long > planes = new ArrayList<>( ( int ) numPlanes );
+		for ( long i = 0; i < numPlanes; i++ )
+			planes.add( i );
+		// Create the Mats on this thread, so that they belong to its PointerScope.
+		final List< Mat > mats;
+		if ( budget == null ) {
+			mats = new ArrayList<>( planes.size() );
+			for ( int i = 0; i < planes.size(); i++ )
+				mats.add( new Mat() );
+		} else {
+			final int[] sizes = ImgToMatConverter.getMatSizes( new long[] { img.dimension( 0 ), img.dimension( 1 ) } );
+			mats = budget.allocate( planes.size(), sizes, ImgToMatConverter.getMatType( Util.getTypeFromInterval( img ) ) );
 		}
-		return ( T ) matVector;
+		if ( planes.size() < taskExecutor.getParallelism() ) {
+			// Too few planes to keep all threads busy, parallelize within the planes instead.
+			for ( final long i : planes )
+				Parallelization.runWithExecutor( taskExecutor, () -> toPlaneMat( img, i, mats.get( ( int ) i ) ) );
+		} else {
+			taskExecutor.forEach( planes, i -> Parallelization.runSingleThreaded(
+					() -> toPlaneMat( img, i, mats.get( i.intValue() ) ) ) );
+		}
+		return NativeMemoryBudget.toMatVector( mats );
+	}
+
+	/**
+	 * Converts the XY plane with the given flat index into the given Mat.
+	 */
+	private static Mat toPlaneMat( final RandomAccessibleInterval< ? > img, final long plane, final Mat dst ) {
+		final Object type = Util.getTypeFromInterval( img );
+		if ( ImgToMatConverter.isPrimitiveType( type ) ) {
+			final long[] dims = { img.dimension( 0 ), img.dimension( 1 ) };
+			final int cvType = ImgToMatConverter.getCvType( type );
+			if ( img instanceof PlanarImg ) {
+				final Object access = ( ( PlanarImg< ?, ? > ) img ).getPlane( ( int ) plane );
+				if ( access instanceof ArrayDataAccess )
+					return ImgToMatConverter.arrayToMat( ( ( ArrayDataAccess< ? > ) access ).getCurrentStorageArray(), 0, dims, cvType, dst );
+			}
+			if ( img instanceof ArrayImg ) {
+				final Object access = ( ( ArrayImg< ?, ? > ) img ).update( null );
+				if ( access instanceof ArrayDataAccess )
+					return ImgToMatConverter.arrayToMat( ( ( ArrayDataAccess< ? > ) access ).getCurrentStorageArray(), ( int ) ( plane * dims[ 0 ] * dims[ 1 ] ), dims, cvType, dst );
+			}
+		}
+		return ImgToMatConverter.toMat( getPlane( img, plane ), dst );
+	}
+
+	/**
+	 * Returns the XY plane with the given flat index over all dimensions
+	 * beyond X and Y.
+	 */
+	private static < T > RandomAccessibleInterval< T > getPlane( final RandomAccessibleInterval< T > img, final long plane ) {
+		long stride = getNumPlanes( img );
+		RandomAccessibleInterval< T > slice = img;
+		for ( int d = img.numDimensions() - 1; d >= 2; d-- ) {
+			stride /= img.dimension( d );
+			slice = Views.hyperSlice( slice, d, img.min( d ) + ( plane / stride ) % img.dimension( d ) );
+		}
+		return slice;
+	}
+
+	/**
+	 * Returns the number of XY planes, i.e. the product of all dimensions
+	 * beyond X and Y.
+	 */
+	private static long getNumPlanes( final RandomAccessibleInterval< ? > img ) {
+		long numPlanes = 1;
+		for ( int d = 2; d < img.numDimensions(); d++ )
+			numPlanes *= img.dimension( d );
+		return numPlanes;
 	}
 
 	@Override
@@ -0,0 +1,50 @@
+/*-
+ * #%L
+ * ImageJ/OpenCV Integration
+ * %%
+ * Copyright (C) 2019 - 2024 ImageJ2 developers.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imagej.opencv;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+
+/**
+ * An imglib2 data access which reads and writes the native memory of an
+ * OpenCV {@link Mat} directly.
+ * <p>
+ * The access holds its own reference to the data of its Mat, so the native
+ * buffer stays alive for as long as the image using the access, even if the
+ * Mat it was created from is closed. Mats over external memory, which is not
+ * reference counted by OpenCV, must outlive the image nevertheless.
+ * </p>
+ */
+public interface MatAccess {
+
+	/**
+	 * @return the Mat whose memory is accessed. It is owned by the access and
+	 *         must not be closed.
+	 */
+	Mat getMat();
+}
@@ -0,0 +1,58 @@
+/*-
+ * #%L
+ * ImageJ/OpenCV Integration
+ * %%
+ * Copyright (C) 2019 - 2024 ImageJ2 developers.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imagej.opencv;
+
+import java.nio.FloatBuffer;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+
+import net.imglib2.img.basictypeaccess.FloatAccess;
+
+/**
+ * A {@link FloatAccess} over the native memory of an OpenCV {@link Mat}.
+ */
+public class MatFloatAccess extends AbstractMatAccess implements FloatAccess {
+
+	private final FloatBuffer buffer;
+
+	public MatFloatAccess( final Mat mat ) {
+		super( mat );
+		buffer = byteBuffer().asFloatBuffer();
+	}
+
+	@Override
+	public float getValue( final int index ) {
+		return buffer.get( index( index ) );
+	}
+
+	@Override
+	public void setValue( final int index, final float value ) {
+		buffer.put( index( index ), value );
+	}
+}
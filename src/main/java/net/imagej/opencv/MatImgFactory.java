@@ -0,0 +1,84 @@
+/*-
+ * #%L
+ * ImageJ/OpenCV Integration
+ * %%
+ * Copyright (C) 2019 - 2024 ImageJ2 developers.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imagej.opencv;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+
+import net.imglib2.exception.IncompatibleTypeException;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.type.NativeType;
+
+/**
+ * Factory for images whose pixels live in the native memory of an OpenCV
+ * {@link Mat} of the reversed sizes, which {@link ImgToMatConverter#toMat}
+ * returns instead of a copy.
+ */
+public class MatImgFactory< T extends NativeType< T > > extends ImgFactory< T > {
+
+	private final NativeMemoryBudget budget;
+
+	public MatImgFactory( final T type ) {
+		this( type, null );
+	}
+
+	/**
+	 * Creates a factory whose images reserve their memory against the given
+	 * budget, or against none if it is {@code null}.
+	 */
+	public MatImgFactory( final T type, final NativeMemoryBudget budget ) {
+		super( type );
+		this.budget = budget;
+	}
+
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	@Override
+	public ArrayImg< T, ? > create( final long... dimensions ) {
+		final int cvType = ImgToMatConverter.getCvType( type() );
+		final Mat mat = budget == null
+				? ImgToMatConverter.createMat( dimensions, cvType )
+				: budget.allocate( ImgToMatConverter.getMatSizes( dimensions ), cvType );
+		final ArrayImg img = new ArrayImg( MatToImgConverter.createAccess( mat ), dimensions.clone(), type().getEntitiesPerPixel() );
+		img.setLinkedType( type().getNativeTypeFactory().createLinkedType( img ) );
+		return img;
+	}
+
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	@Override
+	public < S > ImgFactory< S > imgFactory( final S type ) throws IncompatibleTypeException {
+		if ( type instanceof NativeType )
+			return new MatImgFactory( ( NativeType ) type, budget );
+		throw new IncompatibleTypeException( this, type.getClass().getCanonicalName() + " does not implement NativeType." );
+	}
+
+	@Deprecated
+	public ArrayImg< T, ? > create( final long[] dim, final T type ) {
+		return new MatImgFactory<>( type, budget ).create( dim );
+	}
+}
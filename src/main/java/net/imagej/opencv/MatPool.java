@@ -0,0 +1,216 @@
+/*-
+ * #%L
+ * ImageJ/OpenCV Integration
+ * %%
+ * Copyright (C) 2019 - 2024 ImageJ2 developers.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imagej.opencv;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Set;
+
+import org.bytedeco.javacpp.PointerScope;
+import org.bytedeco.opencv.opencv_core.Mat;
+
+/**
+ * A pool of native Mats for converting many images of the same size. Mats
+ * are taken from the pool with {@link #acquire(int[], int)}, or
+ * by {@link ImgToMatConverter#toMat(net.imglib2.RandomAccessibleInterval, MatPool)},
+ * and given back with {@link #release(Mat)} once they are no longer used.
+ * <p>
+ * The pool keeps at most a given number of idle Mats, of at most a given
+ * number of bytes in total. Beyond that, the least recently released Mats
+ * are closed, freeing their memory immediately. Closing the pool closes all
+ * idle Mats. Mats are reused only for the same sizes and type. The pool is
+ * thread safe.
+ * </p>
+ */
+public class MatPool implements AutoCloseable {
+
+	private final int maxMats;
+
+	private final long maxBytes;
+
+	private final NativeMemoryBudget budget;
+
+	/** The idle Mats, least recently released first. */
+	private final Deque< Entry > idle = new ArrayDeque<>();
+
+	/** The idle Mats, to detect Mats released more than once. */
+	private final Set< Mat > idleMats = Collections.newSetFromMap( new IdentityHashMap<>() );
+
+	private long bytes;
+
+	private long hits;
+
+	private long misses;
+
+	private long evictions;
+
+	/**
+	 * @param maxMats
+	 *            The maximum number of idle Mats kept in the pool.
+	 * @param maxBytes
+	 *            The maximum number of bytes held by the idle Mats.
+	 */
+	public MatPool( final int maxMats, final long maxBytes ) {
+		this( maxMats, maxBytes, null );
+	}
+
+	/**
+	 * @param maxMats
+	 *            The maximum number of idle Mats kept in the pool.
+	 * @param maxBytes
+	 *            The maximum number of bytes held by the idle Mats.
+	 * @param budget
+	 *            The budget the Mats allocated by the pool are reserved
+	 *            against, or {@code null} for none.
+	 */
+	public MatPool( final int maxMats, final long maxBytes, final NativeMemoryBudget budget ) {
+		if ( maxMats < 0 || maxBytes < 0 )
+			throw new IllegalArgumentException( "Negative pool limits: " + maxMats + " Mats, " + maxBytes + " bytes" );
+		this.maxMats = maxMats;
+		this.maxBytes = maxBytes;
+		this.budget = budget;
+	}
+
+	/**
+	 * Returns a Mat of the given sizes and type, an idle one from the pool if
+	 * possible, a newly allocated one otherwise. The content of the Mat is
+	 * undefined. Mats allocated by the pool are not attached to the current
+	 * {@link PointerScope}, their memory is managed by the pool.
+	 */
+	public Mat acquire( final int[] sizes, final int type ) {
+		synchronized ( this ) {
+			final Iterator< Entry > entries = idle.descendingIterator();
+			while ( entries.hasNext() ) {
+				final Entry entry = entries.next();
+				if ( entry.type == type && Arrays.equals( entry.sizes, sizes ) ) {
+					entries.remove();
+					idleMats.remove( entry.mat );
+					bytes -= entry.bytes;
+					hits++;
+					return entry.mat;
+				}
+			}
+			misses++;
+		}
+		final Mat mat = budget == null ? new Mat( sizes.length, sizes, type ) : budget.allocate( sizes, type );
+		final PointerScope scope = PointerScope.getInnerScope();
+		if ( scope != null )
+			NativeMemoryBudget.detach( scope, mat );
+		return mat;
+	}
+
+	/**
+	 * Gives a Mat back to the pool, to be returned by a later
+	 * {@link #acquire(int[], int)} of the same sizes and type. The Mat must
+	 * not be used anymore by the caller. If the pool is full, the least
+	 * recently released Mats are closed. Releasing a Mat that is idle in the
+	 * pool already, or that was closed, has no effect.
+	 */
+	public void release( final Mat mat ) {
+		if ( mat.isNull() || mat.empty() )
+			return;
+		final Entry entry = new Entry( mat );
+		synchronized ( this ) {
+			if ( !idleMats.add( mat ) )
+				return;
+			idle.addLast( entry );
+			bytes += entry.bytes;
+			while ( !idle.isEmpty() && ( idle.size() > maxMats || bytes > maxBytes ) ) {
+				final Entry evicted = idle.removeFirst();
+				idleMats.remove( evicted.mat );
+				bytes -= evicted.bytes;
+				evictions++;
+				evicted.mat.close();
+			}
+		}
+	}
+
+	/** Closes all idle Mats. */
+	public synchronized void clear() {
+		for ( final Entry entry : idle )
+			entry.mat.close();
+		idle.clear();
+		idleMats.clear();
+		bytes = 0;
+	}
+
+	@Override
+	public void close() {
+		clear();
+	}
+
+	/** Returns the number of idle Mats in the pool. */
+	public synchronized int size() {
+		return idle.size();
+	}
+
+	/** Returns the number of bytes held by the idle Mats in the pool. */
+	public synchronized long bytes() {
+		return bytes;
+	}
+
+	/** Returns the number of acquired Mats that were taken from the pool. */
+	public synchronized long hits() {
+		return hits;
+	}
+
+	/** Returns the number of acquired Mats that had to be allocated. */
+	public synchronized long misses() {
+		return misses;
+	}
+
+	/** Returns the number of idle Mats closed to stay within the limits. */
+	public synchronized long evictions() {
+		return evictions;
+	}
+
+	private static final class Entry {
+
+		private final Mat mat;
+
+		private final int[] sizes;
+
+		private final int type;
+
+		private final long bytes;
+
+		private Entry( final Mat mat ) {
+			this.mat = mat;
+			sizes = new int[ mat.dims() ];
+			for ( int d = 0; d < sizes.length; d++ )
+				sizes[ d ] = mat.size( d );
+			type = mat.type();
+			bytes = mat.total() * mat.elemSize();
+		}
+	}
+}
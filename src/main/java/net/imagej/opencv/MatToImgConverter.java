@@ -28,12 +28,16 @@
  */
 package net.imagej.opencv;
 
-import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import java.nio.DoubleBuffer;
-import java.nio.FloatBuffer;
-import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.javacpp.DoublePointer;
+import org.bytedeco.javacpp.FloatPointer;
+import org.bytedeco.javacpp.IntPointer;
+import org.bytedeco.javacpp.ShortPointer;
 import org.bytedeco.opencv.opencv_core.Mat;
 import org.opencv.core.CvType;
 import org.scijava.Prioritized;
@@ -45,15 +49,42 @@ import org.scijava.plugin.Plugin;
 
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgFactory;
 import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.basictypeaccess.array.IntArray;
+import net.imglib2.img.basictypeaccess.array.LongArray;
+import net.imglib2.img.cell.Cell;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.img.cell.CellImg;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.loops.LoopBuilder;
+import net.imglib2.parallel.Parallelization;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.Type;
+import net.imglib2.type.logic.BitType;
+import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.type.numeric.complex.ComplexDoubleType;
+import net.imglib2.type.numeric.complex.ComplexFloatType;
 import net.imglib2.type.numeric.integer.ByteType;
 import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.integer.ShortType;
 import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
 import net.imglib2.type.numeric.real.DoubleType;
 import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.IntervalIndexer;
+import net.imglib2.util.Intervals;
+import net.imglib2.util.Util;
+import net.imglib2.view.Views;
 
 /**
- * Only 1 channel images are supported for the moment.
+ * Converts OpenCV Mats to imglib2 images. The dimensions of the image are the
+ * sizes of the Mat in reverse order, so that a Mat of sizes {@code Z x Y x X}
+ * becomes an {@code X x Y x Z} image. The channels of multi-channel Mats
+ * become an additional last dimension of the image. Half precision
+ * ({@link CvType#CV_16F}) Mats are decoded into {@link FloatType} images.
  * 
  * @author G.Turek for OpenCV version 4.1.2
  */
@@ -62,6 +93,9 @@ import net.imglib2.type.numeric.real.FloatType;
 @Plugin( type = Converter.class, priority = Priority.LOW )
 public class MatToImgConverter extends AbstractConverter< Mat, Img > {
 
+	/** Number of pixels of the cells of images too large for a Java array. */
+	private static final long CELL_PIXELS = 1 << 24;
+
 	@Override
 	public int compareTo( Prioritized o ) {
 		return super.compareTo( o );
@@ -85,19 +119,36 @@ public class MatToImgConverter extends AbstractConverter< Mat, Img > {
 
 	}
 
+	/**
+	 * Creates an image containing the data of the given Mat. Multi-channel
+	 * Mats become images with an additional last dimension holding the
+	 * channels, e.g. a {@link CvType#CV_8UC3} Mat of size {@code Y x X}
+	 * becomes an image of size {@code X x Y x 3}.
+	 * 
+	 * @param mat input Mat object
+	 * @return An image containing the data of the Mat.
+	 */
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
 	public static RandomAccessibleInterval< ? > convert( Mat mat ) {
 		int type = mat.depth();
 
 		if ( mat.channels() > 1 )
-			throw new UnsupportedOperationException( "Only 1 channel images are currently supported" );
+			return convert( mat, createImg( ( NativeType ) getType( type ), getConvertedShape( mat ) ) );
+		if ( mat.total() > ImgToMatConverter.MAX_ARRAY_LENGTH )
+			return toCellImg( mat, CELL_PIXELS );
 
 		switch ( type ) {
 		case CvType.CV_8U:
 			return toUnsignedByteImg( mat );
 		case CvType.CV_8S:
 			return toByteImg( mat );
+		case CvType.CV_16U:
+			return toUnsignedShortImg( mat );
+		case CvType.CV_16S:
+			return toShortImg( mat );
 		case CvType.CV_32S:
 			return toIntImg( mat );
+		case CvType.CV_16F:
 		case CvType.CV_32F:
 			return toFloatImg( mat );
 		case CvType.CV_64F:
@@ -107,6 +158,173 @@ public class MatToImgConverter extends AbstractConverter< Mat, Img > {
 		}
 	}
 
+	/**
+	 * Copies a Mat too large for a Java array into a {@link CellImg} whose
+	 * cells are contiguous parts of the Mat of at most the given number of
+	 * pixels.
+	 */
+	static CellImg< ?, ? > toCellImg( final Mat mat, final long cellPixels ) {
+		switch ( mat.depth() ) {
+		case CvType.CV_8U:
+			return toCellImg( mat, new UnsignedByteType(), cellPixels );
+		case CvType.CV_8S:
+			return toCellImg( mat, new ByteType(), cellPixels );
+		case CvType.CV_16U:
+			return toCellImg( mat, new UnsignedShortType(), cellPixels );
+		case CvType.CV_16S:
+			return toCellImg( mat, new ShortType(), cellPixels );
+		case CvType.CV_32S:
+			return toCellImg( mat, new IntType(), cellPixels );
+		case CvType.CV_16F:
+		case CvType.CV_32F:
+			return toCellImg( mat, new FloatType(), cellPixels );
+		case CvType.CV_64F:
+			return toCellImg( mat, new DoubleType(), cellPixels );
+		default:
+			throw new UnsupportedOperationException( "Unsupported CvType value for Mats of more than " +
+					ImgToMatConverter.MAX_ARRAY_LENGTH + " elements: " + mat.depth() );
+		}
+	}
+
+	private static < T extends NativeType< T > > CellImg< T, ? > toCellImg( final Mat mat, final T type, final long cellPixels ) {
+		if ( !mat.isContinuous() )
+			throw new IllegalArgumentException( "Mats of more than " + ImgToMatConverter.MAX_ARRAY_LENGTH + " elements must be continuous" );
+		final long[] shape = getImgShape( mat );
+		final long[] cellDimensions = ImgToMatConverter.getBandDimensions( shape, cellPixels );
+		final CellImg< T, ? > img = new CellImgFactory<>( type, Arrays.stream( cellDimensions ).mapToInt( d -> ( int ) d ).toArray() ).create( shape );
+		final List< Cell< ? > > cells = new ArrayList<>();
+		for ( final Cell< ? > cell : img.getCells() )
+			cells.add( cell );
+		Parallelization.getTaskExecutor().forEach( cells, cell -> {
+			final long[] min = new long[ shape.length ];
+			cell.min( min );
+			final long position = IntervalIndexer.positionToIndex( min, shape );
+			getArray( mat, position, ( ( ArrayDataAccess< ? > ) cell.getData() ).getCurrentStorageArray() );
+		} );
+		return img;
+	}
+
+	/**
+	 * Fills the given primitive array with the elements of a continuous Mat,
+	 * starting at the given element.
+	 */
+	private static void getArray( final Mat mat, final long position, final Object array ) {
+		if ( array instanceof byte[] ) {
+			mat.data().position( position ).get( ( byte[] ) array );
+		} else if ( array instanceof short[] ) {
+			new ShortPointer( mat.data() ).position( position ).get( ( short[] ) array );
+		} else if ( array instanceof int[] ) {
+			new IntPointer( mat.data() ).position( position ).get( ( int[] ) array );
+		} else if ( array instanceof float[] && mat.depth() == CvType.CV_16F ) {
+			final short[] halfs = new short[ ( ( float[] ) array ).length ];
+			new ShortPointer( mat.data() ).position( position ).get( halfs );
+			halfToFloat( halfs, ( float[] ) array );
+		} else if ( array instanceof float[] ) {
+			new FloatPointer( mat.data() ).position( position ).get( ( float[] ) array );
+		} else {
+			new DoublePointer( mat.data() ).position( position ).get( ( double[] ) array );
+		}
+	}
+
+	/**
+	 * Copies the data of the given Mat into an existing image, instead of
+	 * allocating a new one like {@link #convert(Mat)}. The image must have the
+	 * dimensions and pixel type of the image {@link #convert(Mat)} would
+	 * return, multi-channel Mats hence need images whose last dimension holds
+	 * the channels, and half precision Mats {@link FloatType} images.
+	 * 
+	 * @param src input Mat object
+	 * @param dst the image to copy the Mat into
+	 * @return The given image.
+	 * @throws IllegalArgumentException
+	 *             if the dimensions or pixel type of the image do not match
+	 *             the Mat.
+	 */
+	public static < T > RandomAccessibleInterval< T > convert( final Mat src, final RandomAccessibleInterval< T > dst ) {
+		return convert( src, dst, ImgToMatConverter.MAX_ARRAY_LENGTH );
+	}
+
+	/**
+	 * Copies the data of the given Mat into an existing image, reading it in
+	 * bands of at most {@code maxBandBytes} if it has to be wrapped, see
+	 * {@link #readInBands}.
+	 */
+	@SuppressWarnings( "rawtypes" )
+	static < T > RandomAccessibleInterval< T > convert( final Mat src, final RandomAccessibleInterval< T > dst, final long maxBandBytes ) {
+		long[] shape = getConvertedShape( src );
+		if ( dst.numDimensions() == 1 && shape.length == 2 && shape[ 1 ] == 1 )
+			shape = new long[] { shape[ 0 ] };
+		if ( !Arrays.equals( shape, Intervals.dimensionsAsLongArray( dst ) ) )
+			throw new IllegalArgumentException( "Expected an image of size " + Arrays.toString( shape ) +
+					", got " + Arrays.toString( Intervals.dimensionsAsLongArray( dst ) ) );
+		final Object sourceType = getType( src.depth() );
+		final Object targetType = Util.getTypeFromInterval( dst );
+		if ( sourceType.getClass() != targetType.getClass() )
+			throw new IllegalArgumentException( "Expected an image of type " + sourceType.getClass().getSimpleName() +
+					", got " + targetType.getClass().getSimpleName() );
+		final Object access = dst instanceof ArrayImg ? ( ( ArrayImg ) dst ).update( null ) : null;
+		if ( src.channels() == 1 && access instanceof ArrayDataAccess )
+			copyToArray( src, ( ( ArrayDataAccess ) access ).getCurrentStorageArray(), 0 );
+		else if ( src.total() * src.elemSize() > maxBandBytes )
+			readInBands( src, dst, maxBandBytes );
+		else
+			copy( src, dst );
+		return dst;
+	}
+
+	/**
+	 * Copies a Mat into an image of matching size through a wrapped image.
+	 */
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	private static void copy( final Mat src, final RandomAccessibleInterval< ? > dst ) {
+		RandomAccessibleInterval source = wrapOrDecode( src );
+		if ( src.channels() > 1 )
+			source = Views.moveAxis( source, 0, source.numDimensions() - 1 );
+		else if ( dst.numDimensions() == 1 )
+			source = Views.hyperSlice( source, 1, 0 );
+		LoopBuilder.setImages( ( RandomAccessibleInterval< Type > ) source, ( RandomAccessibleInterval< Type > ) dst )
+				.multiThreaded().forEachPixel( ( i, o ) -> o.set( i ) );
+	}
+
+	/**
+	 * Copies a Mat too large to be wrapped as a single {@link ArrayImg} into
+	 * an image, wrapping one contiguous band of the Mat at a time.
+	 */
+	private static void readInBands( final Mat src, final RandomAccessibleInterval< ? > dst, final long maxBandBytes ) {
+		if ( !src.isContinuous() )
+			throw new IllegalArgumentException( "Mats of more than " + maxBandBytes + " bytes must be continuous" );
+		final long[] shape = getImgShape( src );
+		final long[] dimensions = src.channels() == 1 ? shape : Arrays.copyOfRange( shape, 1, shape.length );
+		final int n = dimensions.length;
+		final RandomAccessibleInterval< ? > target = dst.numDimensions() == 1 ? Views.addDimension( dst, 0, 0 ) : dst;
+		final long[] bandDimensions = ImgToMatConverter.getBandDimensions( dimensions, Math.max( 1, maxBandBytes / src.elemSize() ) );
+		final CellGrid bands = new CellGrid( dimensions, Arrays.stream( bandDimensions ).mapToInt( d -> ( int ) d ).toArray() );
+		final long[] gridDimensions = bands.getGridDimensions();
+		final long numBands = Intervals.numElements( gridDimensions );
+		final long[] gridPosition = new long[ n ];
+		final long[] min = new long[ n ];
+		final int[] size = new int[ n ];
+		for ( long i = 0; i < numBands; i++ ) {
+			IntervalIndexer.indexToPosition( i, gridDimensions, gridPosition );
+			bands.getCellDimensions( gridPosition, min, size );
+			final long offset = IntervalIndexer.positionToIndex( min, dimensions ) * src.elemSize();
+			// the channels, if any, are the last dimension of the image
+			final long[] bandMin = new long[ target.numDimensions() ];
+			final long[] bandMax = new long[ target.numDimensions() ];
+			final long[] bandSize = new long[ n ];
+			for ( int d = 0; d < target.numDimensions(); d++ ) {
+				bandMin[ d ] = target.min( d ) + ( d < n ? min[ d ] : 0 );
+				bandMax[ d ] = d < n ? bandMin[ d ] + size[ d ] - 1 : target.max( d );
+			}
+			for ( int d = 0; d < n; d++ )
+				bandSize[ d ] = size[ d ];
+			final int[] sizes = ImgToMatConverter.getMatSizes( bandSize );
+			try (Mat band = new Mat( sizes.length, sizes, src.type(), src.data().position( offset ) )) {
+				copy( band, Views.zeroMin( Views.interval( target, bandMin, bandMax ) ) );
+			}
+		}
+	}
+
 	@Override
 	public Class< Img > getOutputType() {
 		return Img.class;
@@ -127,11 +345,7 @@ public class MatToImgConverter extends AbstractConverter< Mat, Img > {
 	 */
 	public static RandomAccessibleInterval< UnsignedByteType > toUnsignedByteImg( final Mat mat ) {
 		byte[] out = toByteArray( mat );
-		long[] dims = getMatShape( mat );
-		long[] reshaped = dims.clone();
-		reshaped[ 0 ] = dims[ 1 ];
-		reshaped[ 1 ] = dims[ 0 ];
-		return ArrayImgs.unsignedBytes( out, reshaped );
+		return ArrayImgs.unsignedBytes( out, getImgShape( mat ) );
 	}
 
 	/**
@@ -143,11 +357,31 @@ public class MatToImgConverter extends AbstractConverter< Mat, Img > {
 	 */
 	public static RandomAccessibleInterval< ByteType > toByteImg( final Mat mat ) {
 		byte[] out = toByteArray( mat );
-		long[] dims = getMatShape( mat );
-		long[] reshaped = dims.clone();
-		reshaped[ 0 ] = dims[ 1 ];
-		reshaped[ 1 ] = dims[ 0 ];
-		return ArrayImgs.bytes( out, reshaped );
+		return ArrayImgs.bytes( out, getImgShape( mat ) );
+	}
+
+	/**
+	 * Creates an image of type {@link UnsignedShortType} containing the data of
+	 * an OpenCV Mat matrix with the data type {@link CvType#CV_16UC1}.
+	 * 
+	 * @param mat input Mat object
+	 * @return An image containing the data of the Mat.
+	 */
+	public static RandomAccessibleInterval< UnsignedShortType > toUnsignedShortImg( final Mat mat ) {
+		short[] out = toShortArray( mat );
+		return ArrayImgs.unsignedShorts( out, getImgShape( mat ) );
+	}
+
+	/**
+	 * Creates an image of type {@link ShortType} containing the data of an
+	 * OpenCV Mat matrix with the data type {@link CvType#CV_16SC1}.
+	 * 
+	 * @param mat input Mat object
+	 * @return An image containing the data of the Mat.
+	 */
+	public static RandomAccessibleInterval< ShortType > toShortImg( final Mat mat ) {
+		short[] out = toShortArray( mat );
+		return ArrayImgs.shorts( out, getImgShape( mat ) );
 	}
 
 	/**
@@ -159,27 +393,20 @@ public class MatToImgConverter extends AbstractConverter< Mat, Img > {
 	 */
 	public static RandomAccessibleInterval< IntType > toIntImg( final Mat mat ) {
 		int[] out = toIntArray( mat );
-		long[] dims = getMatShape( mat );
-		long[] reshaped = dims.clone();
-		reshaped[ 0 ] = dims[ 1 ];
-		reshaped[ 1 ] = dims[ 0 ];
-		return ArrayImgs.ints( out, reshaped );
+		return ArrayImgs.ints( out, getImgShape( mat ) );
 	}
 
 	/**
 	 * Creates an image of type {@link FloatType} containing the data of an
-	 * OpenCV Mat matrix with the data type {@link CvType#CV_32FC1}.
+	 * OpenCV Mat matrix with the data type {@link CvType#CV_32FC1} or
+	 * {@link CvType#CV_16FC1}.
 	 * 
 	 * @param mat input Mat object
 	 * @return An image containing the data of the Mat.
 	 */
 	public static RandomAccessibleInterval< FloatType > toFloatImg( final Mat mat ) {
 		float[] out = toFloatArray( mat );
-		long[] dims = getMatShape( mat );
-		long[] reshaped = dims.clone();
-		reshaped[ 0 ] = dims[ 1 ];
-		reshaped[ 1 ] = dims[ 0 ];
-		return ArrayImgs.floats( out, reshaped );
+		return ArrayImgs.floats( out, getImgShape( mat ) );
 	}
 
 	/**
@@ -191,43 +418,375 @@ public class MatToImgConverter extends AbstractConverter< Mat, Img > {
 	 */
 	public static RandomAccessibleInterval< DoubleType > toDoubleImg( Mat mat ) {
 		double[] out = toDoubleArray( mat );
-		long[] dims = getMatShape( mat );
-		long[] reshaped = dims.clone();
-		reshaped[ 0 ] = dims[ 1 ];
-		reshaped[ 1 ] = dims[ 0 ];
-		return ArrayImgs.doubles( out, reshaped );
+		return ArrayImgs.doubles( out, getImgShape( mat ) );
+	}
+
+	/**
+	 * Creates an image sharing the native memory of the given Mat, see
+	 * {@link MatAccess}. The channels of a multi-channel Mat become the first
+	 * dimension of the image. Half precision ({@link CvType#CV_16F}) Mats
+	 * cannot be wrapped.
+	 * 
+	 * @param mat input Mat object, which must be continuous or 2 dimensional
+	 * @return An image sharing the memory of the Mat.
+	 */
+	public static ArrayImg< ?, ? extends MatAccess > wrap( final Mat mat ) {
+		int type = mat.depth();
+
+		switch ( type ) {
+		case CvType.CV_8U:
+			return wrapUnsignedByteImg( mat );
+		case CvType.CV_8S:
+			return wrapByteImg( mat );
+		case CvType.CV_16U:
+			return wrapUnsignedShortImg( mat );
+		case CvType.CV_16S:
+			return wrapShortImg( mat );
+		case CvType.CV_32S:
+			return wrapIntImg( mat );
+		case CvType.CV_32F:
+			return wrapFloatImg( mat );
+		case CvType.CV_64F:
+			return wrapDoubleImg( mat );
+		case CvType.CV_16F:
+			throw new UnsupportedOperationException( "Half precision Mats cannot be wrapped, use convert( Mat ) to decode them" );
+		default:
+			throw new UnsupportedOperationException( "Unsupported CvType value: " + type );
+		}
+	}
+
+	/**
+	 * Creates an image of type {@link UnsignedByteType} sharing the memory of
+	 * an OpenCV Mat matrix with the data type {@link CvType#CV_8UC1}.
+	 * 
+	 * @param mat input Mat object
+	 * @return An image backed by the data of the Mat.
+	 */
+	public static ArrayImg< UnsignedByteType, MatByteAccess > wrapUnsignedByteImg( final Mat mat ) {
+		return ArrayImgs.unsignedBytes( new MatByteAccess( mat ), getImgShape( mat ) );
+	}
+
+	/**
+	 * Creates an image of type {@link ByteType} sharing the memory of an
+	 * OpenCV Mat matrix with the data type {@link CvType#CV_8SC1}.
+	 * 
+	 * @param mat input Mat object
+	 * @return An image backed by the data of the Mat.
+	 */
+	public static ArrayImg< ByteType, MatByteAccess > wrapByteImg( final Mat mat ) {
+		return ArrayImgs.bytes( new MatByteAccess( mat ), getImgShape( mat ) );
+	}
+
+	/**
+	 * Creates an image of type {@link UnsignedShortType} sharing the memory of
+	 * an OpenCV Mat matrix with the data type {@link CvType#CV_16UC1}.
+	 * 
+	 * @param mat input Mat object
+	 * @return An image backed by the data of the Mat.
+	 */
+	public static ArrayImg< UnsignedShortType, MatShortAccess > wrapUnsignedShortImg( final Mat mat ) {
+		return ArrayImgs.unsignedShorts( new MatShortAccess( mat ), getImgShape( mat ) );
+	}
+
+	/**
+	 * Creates an image of type {@link ShortType} sharing the memory of an
+	 * OpenCV Mat matrix with the data type {@link CvType#CV_16SC1}.
+	 * 
+	 * @param mat input Mat object
+	 * @return An image backed by the data of the Mat.
+	 */
+	public static ArrayImg< ShortType, MatShortAccess > wrapShortImg( final Mat mat ) {
+		return ArrayImgs.shorts( new MatShortAccess( mat ), getImgShape( mat ) );
+	}
+
+	/**
+	 * Creates an image of type {@link IntType} sharing the memory of an
+	 * OpenCV Mat matrix with the data type {@link CvType#CV_32SC1}.
+	 * 
+	 * @param mat input Mat object
+	 * @return An image backed by the data of the Mat.
+	 */
+	public static ArrayImg< IntType, MatIntAccess > wrapIntImg( final Mat mat ) {
+		return ArrayImgs.ints( new MatIntAccess( mat ), getImgShape( mat ) );
+	}
+
+	/**
+	 * Creates an image of type {@link FloatType} sharing the memory of an
+	 * OpenCV Mat matrix with the data type {@link CvType#CV_32FC1}.
+	 * 
+	 * @param mat input Mat object
+	 * @return An image backed by the data of the Mat.
+	 */
+	public static ArrayImg< FloatType, MatFloatAccess > wrapFloatImg( final Mat mat ) {
+		return ArrayImgs.floats( new MatFloatAccess( mat ), getImgShape( mat ) );
+	}
+
+	/**
+	 * Creates an image of type {@link DoubleType} sharing the memory of an
+	 * OpenCV Mat matrix with the data type {@link CvType#CV_64FC1}.
+	 * 
+	 * @param mat input Mat object
+	 * @return An image backed by the data of the Mat.
+	 */
+	public static ArrayImg< DoubleType, MatDoubleAccess > wrapDoubleImg( final Mat mat ) {
+		return ArrayImgs.doubles( new MatDoubleAccess( mat ), getImgShape( mat ) );
+	}
+
+	/**
+	 * Creates an image of type {@link ComplexFloatType} containing the data of
+	 * an OpenCV Mat matrix with the data type {@link CvType#CV_32FC2}, such as
+	 * the spectrum computed by {@code dft}.
+	 * 
+	 * @param mat input Mat object
+	 * @return An image containing the data of the Mat.
+	 */
+	public static RandomAccessibleInterval< ComplexFloatType > toComplexFloatImg( final Mat mat ) {
+		final long[] shape = getComplexImgShape( mat, CvType.CV_32F );
+		return ArrayImgs.complexFloats( toFloatArray( mat ), shape );
+	}
+
+	/**
+	 * Creates an image of type {@link ComplexDoubleType} containing the data of
+	 * an OpenCV Mat matrix with the data type {@link CvType#CV_64FC2}.
+	 * 
+	 * @param mat input Mat object
+	 * @return An image containing the data of the Mat.
+	 */
+	public static RandomAccessibleInterval< ComplexDoubleType > toComplexDoubleImg( final Mat mat ) {
+		final long[] shape = getComplexImgShape( mat, CvType.CV_64F );
+		return ArrayImgs.complexDoubles( toDoubleArray( mat ), shape );
+	}
+
+	/**
+	 * Creates an image of type {@link ComplexFloatType} sharing the memory of
+	 * an OpenCV Mat matrix with the data type {@link CvType#CV_32FC2}.
+	 * 
+	 * @param mat input Mat object
+	 * @return An image backed by the data of the Mat.
+	 */
+	public static ArrayImg< ComplexFloatType, MatFloatAccess > wrapComplexFloatImg( final Mat mat ) {
+		final long[] shape = getComplexImgShape( mat, CvType.CV_32F );
+		return ArrayImgs.complexFloats( new MatFloatAccess( mat ), shape );
+	}
+
+	/**
+	 * Creates an image of type {@link ComplexDoubleType} sharing the memory of
+	 * an OpenCV Mat matrix with the data type {@link CvType#CV_64FC2}.
+	 * 
+	 * @param mat input Mat object
+	 * @return An image backed by the data of the Mat.
+	 */
+	public static ArrayImg< ComplexDoubleType, MatDoubleAccess > wrapComplexDoubleImg( final Mat mat ) {
+		final long[] shape = getComplexImgShape( mat, CvType.CV_64F );
+		return ArrayImgs.complexDoubles( new MatDoubleAccess( mat ), shape );
+	}
+
+	/**
+	 * Creates an image of type {@link ARGBType} containing the data of an
+	 * OpenCV color Mat with the data type {@link CvType#CV_8UC4}, in BGRA
+	 * channel order, or {@link CvType#CV_8UC3}, in BGR channel order. Three
+	 * channel Mats become opaque images.
+	 * 
+	 * @param mat input Mat object
+	 * @return An image containing the data of the Mat.
+	 */
+	public static RandomAccessibleInterval< ARGBType > toARGBImg( final Mat mat ) {
+		if ( mat.depth() != CvType.CV_8U || ( mat.channels() != 3 && mat.channels() != 4 ) )
+			throw new IllegalArgumentException( "Expected a Mat of CvType CV_8UC3 or CV_8UC4, got " + CvType.typeToString( mat.type() ) );
+		final long[] imgShape = getImgShape( mat );
+		final long[] shape = Arrays.copyOfRange( imgShape, 1, imgShape.length );
+		if ( mat.channels() == 4 && mat.isContinuous() && ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN ) {
+			// B, G, R, A in little endian byte order is 0xAARRGGBB already
+			final int[] out = new int[ ImgToMatConverter.getArrayLength( mat.total() ) ];
+			new IntPointer( mat.data() ).get( out );
+			return ArrayImgs.argbs( out, shape );
+		}
+		final ArrayImg< ARGBType, IntArray > out = ArrayImgs.argbs( shape );
+		final ArrayImg< UnsignedByteType, MatByteAccess > interleaved = wrapUnsignedByteImg( mat );
+		final RandomAccessibleInterval< UnsignedByteType > b = Views.hyperSlice( interleaved, 0, 0 );
+		final RandomAccessibleInterval< UnsignedByteType > g = Views.hyperSlice( interleaved, 0, 1 );
+		final RandomAccessibleInterval< UnsignedByteType > r = Views.hyperSlice( interleaved, 0, 2 );
+		if ( mat.channels() == 4 ) {
+			final RandomAccessibleInterval< UnsignedByteType > a = Views.hyperSlice( interleaved, 0, 3 );
+			LoopBuilder.setImages( b, g, r, a, out ).multiThreaded().forEachPixel(
+					( bi, gi, ri, ai, o ) -> o.set( ARGBType.rgba( ri.get(), gi.get(), bi.get(), ai.get() ) ) );
+		} else {
+			LoopBuilder.setImages( b, g, r, out ).multiThreaded().forEachPixel(
+					( bi, gi, ri, o ) -> o.set( ARGBType.rgba( ri.get(), gi.get(), bi.get(), 0xff ) ) );
+		}
+		return out;
+	}
+
+	/**
+	 * Creates a bit packed image of type {@link BitType} from an OpenCV mask,
+	 * a Mat with the data type {@link CvType#CV_8UC1} whose non-zero pixels
+	 * are set.
+	 * 
+	 * @param mat input Mat object
+	 * @return An image containing the mask.
+	 */
+	public static ArrayImg< BitType, LongArray > toBitImg( final Mat mat ) {
+		if ( mat.type() != CvType.CV_8UC1 )
+			throw new IllegalArgumentException( "Expected a Mat of CvType CV_8UC1, got " + CvType.typeToString( mat.type() ) );
+		final ArrayImg< BitType, LongArray > out = ArrayImgs.bits( getImgShape( mat ) );
+		final long[] words = out.update( null ).getCurrentStorageArray();
+		final long numPixels = mat.total();
+		// the rows of a non-continuous Mat are gathered into a Java array first
+		final byte[] gathered = mat.isContinuous() ? null : toByteArray( mat );
+		final BytePointer data = mat.data();
+		final int chunkSize = ImgToMatConverter.WORDS_PER_CHUNK;
+		final int numChunks = ( words.length + chunkSize - 1 ) / chunkSize;
+		final List< Integer > chunks = new ArrayList<>( numChunks );
+		for ( int i = 0; i < numChunks; i++ )
+			chunks.add( i );
+		Parallelization.getTaskExecutor().forEach( chunks, chunk -> {
+			final int firstWord = chunk * chunkSize;
+			final int length = ( int ) Math.min( numPixels - firstWord * 64L, chunkSize * 64 );
+			final byte[] bytes = new byte[ length ];
+			if ( gathered == null )
+				new BytePointer( data ).position( firstWord * 64L ).get( bytes, 0, length );
+			else
+				System.arraycopy( gathered, firstWord * 64, bytes, 0, length );
+			for ( int i = 0; i < length; i += 64 ) {
+				long word = 0;
+				final int end = Math.min( 64, length - i );
+				for ( int b = 0; b < end; b++ )
+					if ( bytes[ i + b ] != 0 )
+						word |= 1L << b;
+				words[ firstWord + ( i >>> 6 ) ] = word;
+			}
+		} );
+		return out;
 	}
 
 	public static byte[] toByteArray( final Mat mat ) {
-		byte[] out = new byte[ ( int ) mat.arraySize() ];
-		mat.arrayData().get( out );
+		byte[] out = new byte[ ImgToMatConverter.getArrayLength( mat.total() * mat.elemSize() ) ];
+		BytePointer data = mat.data();
+		forEachRow( mat, 1, ( matOffset, arrayOffset, length ) -> data.position( matOffset ).get( out, arrayOffset, length ) );
+		return out;
+	}
+
+	public static short[] toShortArray( final Mat mat ) {
+		short[] out = new short[ ImgToMatConverter.getArrayLength( mat.total() * mat.channels() ) ];
+		ShortPointer data = new ShortPointer( mat.data() );
+		forEachRow( mat, Short.BYTES, ( matOffset, arrayOffset, length ) -> data.position( matOffset ).get( out, arrayOffset, length ) );
 		return out;
 	}
 
 	public static int[] toIntArray( final Mat mat ) {
-		byte[] bytes = toByteArray( mat );
-		IntBuffer intBuf = ByteBuffer.wrap( bytes ).order( ByteOrder.nativeOrder() ).asIntBuffer();
-		int[] out = new int[ intBuf.remaining() ];
-		intBuf.get( out );
+		int[] out = new int[ ImgToMatConverter.getArrayLength( mat.total() * mat.channels() ) ];
+		IntPointer data = new IntPointer( mat.data() );
+		forEachRow( mat, Integer.BYTES, ( matOffset, arrayOffset, length ) -> data.position( matOffset ).get( out, arrayOffset, length ) );
 		return out;
 	}
 
 	public static float[] toFloatArray( final Mat mat ) {
-		byte[] bytes = toByteArray( mat );
-		FloatBuffer floatBuf = ByteBuffer.wrap( bytes ).order( ByteOrder.nativeOrder() ).asFloatBuffer();
-		float[] out = new float[ floatBuf.remaining() ];
-		floatBuf.get( out );
+		if ( mat.depth() == CvType.CV_16F )
+			return halfToFloat( toShortArray( mat ) );
+		float[] out = new float[ ImgToMatConverter.getArrayLength( mat.total() * mat.channels() ) ];
+		FloatPointer data = new FloatPointer( mat.data() );
+		forEachRow( mat, Float.BYTES, ( matOffset, arrayOffset, length ) -> data.position( matOffset ).get( out, arrayOffset, length ) );
 		return out;
 	}
 
 	public static double[] toDoubleArray( Mat mat ) {
-		byte[] bytes = toByteArray( mat );
-		DoubleBuffer doubleBuf = ByteBuffer.wrap( bytes ).order( ByteOrder.nativeOrder() ).asDoubleBuffer();
-		double[] out = new double[ doubleBuf.remaining() ];
-		doubleBuf.get( out );
+		double[] out = new double[ ImgToMatConverter.getArrayLength( mat.total() * mat.channels() ) ];
+		DoublePointer data = new DoublePointer( mat.data() );
+		forEachRow( mat, Double.BYTES, ( matOffset, arrayOffset, length ) -> data.position( matOffset ).get( out, arrayOffset, length ) );
+		return out;
+	}
+
+	/**
+	 * Copies the data of the given Mat into a primitive array of the matching
+	 * element size, starting at the given offset of the array.
+	 */
+	static void copyToArray( final Mat mat, final Object array, final int offset ) {
+		if ( array instanceof byte[] && mat.elemSize1() == Byte.BYTES ) {
+			BytePointer data = mat.data();
+			forEachRow( mat, Byte.BYTES, ( matOffset, arrayOffset, length ) -> data.position( matOffset ).get( ( byte[] ) array, offset + arrayOffset, length ) );
+		} else if ( array instanceof short[] && mat.elemSize1() == Short.BYTES ) {
+			ShortPointer data = new ShortPointer( mat.data() );
+			forEachRow( mat, Short.BYTES, ( matOffset, arrayOffset, length ) -> data.position( matOffset ).get( ( short[] ) array, offset + arrayOffset, length ) );
+		} else if ( array instanceof int[] && mat.depth() == CvType.CV_32S ) {
+			IntPointer data = new IntPointer( mat.data() );
+			forEachRow( mat, Integer.BYTES, ( matOffset, arrayOffset, length ) -> data.position( matOffset ).get( ( int[] ) array, offset + arrayOffset, length ) );
+		} else if ( array instanceof float[] && mat.depth() == CvType.CV_16F ) {
+			final float[] floats = toFloatArray( mat );
+			System.arraycopy( floats, 0, array, offset, floats.length );
+		} else if ( array instanceof float[] && mat.depth() == CvType.CV_32F ) {
+			FloatPointer data = new FloatPointer( mat.data() );
+			forEachRow( mat, Float.BYTES, ( matOffset, arrayOffset, length ) -> data.position( matOffset ).get( ( float[] ) array, offset + arrayOffset, length ) );
+		} else if ( array instanceof double[] && mat.depth() == CvType.CV_64F ) {
+			DoublePointer data = new DoublePointer( mat.data() );
+			forEachRow( mat, Double.BYTES, ( matOffset, arrayOffset, length ) -> data.position( matOffset ).get( ( double[] ) array, offset + arrayOffset, length ) );
+		} else {
+			throw new IllegalArgumentException( "Cannot copy a Mat of CvType " + mat.type() + " into " + array.getClass().getSimpleName() );
+		}
+	}
+
+	/**
+	 * Decodes IEEE 754 half precision values, as stored in
+	 * {@link CvType#CV_16F} Mats.
+	 */
+	private static float[] halfToFloat( final short[] halfs ) {
+		final float[] out = new float[ halfs.length ];
+		halfToFloat( halfs, out );
 		return out;
 	}
 
+	private static void halfToFloat( final short[] halfs, final float[] out ) {
+		for ( int i = 0; i < halfs.length; i++ ) {
+			final int h = halfs[ i ] & 0xffff;
+			final int sign = ( h & 0x8000 ) << 16;
+			final int exponent = ( h >>> 10 ) & 0x1f;
+			final int mantissa = h & 0x3ff;
+			if ( exponent == 0x1f ) // infinity or NaN
+				out[ i ] = Float.intBitsToFloat( sign | 0x7f800000 | ( mantissa << 13 ) );
+			else if ( exponent == 0 ) // zero or subnormal
+				out[ i ] = sign == 0 ? mantissa * 0x1p-24f : -mantissa * 0x1p-24f;
+			else
+				out[ i ] = Float.intBitsToFloat( sign | ( ( exponent + 112 ) << 23 ) | ( mantissa << 13 ) );
+		}
+	}
+
+	/**
+	 * Copies one contiguous run of Mat elements into a packed array.
+	 */
+	private interface RowCopy {
+
+		void copy( long matOffset, int arrayOffset, int length );
+	}
+
+	/**
+	 * Calls {@code copy} for every contiguous run of data in the given Mat. A
+	 * continuous Mat is a single run, otherwise every row is one. Offsets and
+	 * lengths are counted in units of {@code unit} bytes.
+	 */
+	private static void forEachRow( final Mat mat, final int unit, final RowCopy copy ) {
+		final long length = mat.total() * mat.elemSize() / unit;
+		if ( mat.isContinuous() ) {
+			copy.copy( 0, 0, ( int ) length );
+			return;
+		}
+		final int outer = mat.dims() - 1;
+		final long[] steps = new long[ outer ];
+		for ( int d = 0; d < outer; d++ )
+			steps[ d ] = mat.step1( d ) * mat.elemSize1() / unit;
+		final int rowLength = ( int ) ( mat.size( outer ) * mat.elemSize() / unit );
+		final long[] position = new long[ outer ];
+		for ( int arrayOffset = 0; arrayOffset < length; arrayOffset += rowLength ) {
+			long matOffset = 0;
+			for ( int d = 0; d < outer; d++ )
+				matOffset += position[ d ] * steps[ d ];
+			copy.copy( matOffset, arrayOffset, rowLength );
+			for ( int d = outer - 1; d >= 0; d-- ) {
+				if ( ++position[ d ] < mat.size( d ) )
+					break;
+				position[ d ] = 0;
+			}
+		}
+	}
+
 	public static long[] getMatShape( Mat mat ) {
 		long[] dims = new long[ mat.dims() ];
 		for ( int i = 0; i < mat.dims(); i++ ) {
@@ -235,4 +794,117 @@ public class MatToImgConverter extends AbstractConverter< Mat, Img > {
 		}
 		return dims;
 	}
+
+	/**
+	 * Returns the dimensions of the image {@link #convert(Mat)} creates for the
+	 * given Mat, with the channels, if any, in the last dimension.
+	 */
+	private static long[] getConvertedShape( final Mat mat ) {
+		final long[] shape = getImgShape( mat );
+		if ( mat.channels() == 1 )
+			return shape;
+		final long[] converted = Arrays.copyOfRange( shape, 1, shape.length + 1 );
+		converted[ shape.length - 1 ] = shape[ 0 ];
+		return converted;
+	}
+
+	/**
+	 * Creates an image of the given dimensions, a {@link CellImg} if it is too
+	 * large for a single Java array.
+	 */
+	private static < T extends NativeType< T > > Img< T > createImg( final T type, final long[] shape ) {
+		if ( Intervals.numElements( shape ) > ImgToMatConverter.MAX_ARRAY_LENGTH ) {
+			final long[] cellDimensions = ImgToMatConverter.getBandDimensions( shape, CELL_PIXELS );
+			return new CellImgFactory<>( type, Arrays.stream( cellDimensions ).mapToInt( d -> ( int ) d ).toArray() ).create( shape );
+		}
+		return new ArrayImgFactory<>( type ).create( shape );
+	}
+
+	/**
+	 * Wraps the given Mat, or decodes it into a {@link FloatType} image of the
+	 * same layout if it has half precision.
+	 */
+	private static ArrayImg< ?, ? > wrapOrDecode( final Mat mat ) {
+		if ( mat.depth() == CvType.CV_16F )
+			return ArrayImgs.floats( toFloatArray( mat ), getImgShape( mat ) );
+		return wrap( mat );
+	}
+
+	/**
+	 * Returns a variable of the pixel type of the images converted from Mats
+	 * of the given depth.
+	 */
+	static NativeType< ? > getType( final int depth ) {
+		switch ( depth ) {
+		case CvType.CV_8U:
+			return new UnsignedByteType();
+		case CvType.CV_8S:
+			return new ByteType();
+		case CvType.CV_16U:
+			return new UnsignedShortType();
+		case CvType.CV_16S:
+			return new ShortType();
+		case CvType.CV_32S:
+			return new IntType();
+		case CvType.CV_16F:
+		case CvType.CV_32F:
+			return new FloatType();
+		case CvType.CV_64F:
+			return new DoubleType();
+		default:
+			throw new UnsupportedOperationException( "Unsupported CvType value: " + depth );
+		}
+	}
+
+	/**
+	 * Creates the {@link MatAccess} matching the depth of the given Mat.
+	 * Half precision Mats are not supported.
+	 */
+	static AbstractMatAccess createAccess( final Mat mat ) {
+		switch ( mat.depth() ) {
+		case CvType.CV_8U:
+		case CvType.CV_8S:
+			return new MatByteAccess( mat );
+		case CvType.CV_16U:
+		case CvType.CV_16S:
+			return new MatShortAccess( mat );
+		case CvType.CV_32S:
+			return new MatIntAccess( mat );
+		case CvType.CV_32F:
+			return new MatFloatAccess( mat );
+		case CvType.CV_64F:
+			return new MatDoubleAccess( mat );
+		default:
+			throw new UnsupportedOperationException( "Unsupported CvType value: " + mat.depth() );
+		}
+	}
+
+	/**
+	 * Returns the shape of the complex image corresponding to a two channel
+	 * Mat of the given depth, holding the real and imaginary parts.
+	 */
+	private static long[] getComplexImgShape( final Mat mat, final int depth ) {
+		if ( mat.channels() != 2 || mat.depth() != depth )
+			throw new IllegalArgumentException( "Expected a Mat of CvType " + CvType.typeToString( CvType.makeType( depth, 2 ) ) +
+					", got " + CvType.typeToString( mat.type() ) );
+		final long[] shape = getImgShape( mat );
+		return Arrays.copyOfRange( shape, 1, shape.length );
+	}
+
+	/**
+	 * Returns the shape of the image corresponding to the given Mat, i.e. its
+	 * sizes in reverse order with X (columns) first and Y (rows) second,
+	 * preceded by the number of channels for multi-channel Mats. The image
+	 * then has the same memory layout as the Mat.
+	 */
+	private static long[] getImgShape( Mat mat ) {
+		int dims = mat.dims();
+		int offset = mat.channels() == 1 ? 0 : 1;
+		long[] shape = new long[ dims + offset ];
+		if ( offset == 1 )
+			shape[ 0 ] = mat.channels();
+		for ( int d = 0; d < dims; d++ )
+			shape[ offset + d ] = mat.size( dims - 1 - d );
+		return shape;
+	}
 }
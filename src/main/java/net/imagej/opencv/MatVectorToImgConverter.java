@@ -29,9 +29,12 @@
 package net.imagej.opencv;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
+import org.bytedeco.opencv.opencv_core.Mat;
 import org.bytedeco.opencv.opencv_core.MatVector;
+import org.opencv.core.CvType;
 import org.scijava.Prioritized;
 import org.scijava.Priority;
 import org.scijava.convert.AbstractConverter;
@@ -40,10 +43,30 @@ import org.scijava.log.LogService;
 import org.scijava.plugin.Plugin;
 
 import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.cache.img.CachedCellImg;
+import net.imglib2.cache.img.CellLoader;
+import net.imglib2.cache.img.ReadOnlyCachedCellImgFactory;
+import net.imglib2.cache.img.ReadOnlyCachedCellImgOptions;
+import net.imglib2.cache.img.optional.CacheOptions.CacheType;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.basictypeaccess.array.ByteArray;
+import net.imglib2.img.basictypeaccess.array.DoubleArray;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.img.basictypeaccess.array.IntArray;
+import net.imglib2.img.basictypeaccess.array.ShortArray;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.parallel.Parallelization;
+import net.imglib2.type.NativeType;
 import net.imglib2.view.Views;
 
 /**
- * Only 1 channel images are supported for the moment.
+ * Only 1 channel images are supported for the moment. The Mats are stacked
+ * along the third dimension, or along several dimensions with
+ * {@link #toImg(MatVector, long...)}. Half precision ({@link CvType#CV_16F})
+ * Mats are decoded into {@link net.imglib2.type.numeric.real.FloatType}
+ * images.
  * 
  * @author G.Turek for OpenCV version 4.1.2
  */
@@ -71,12 +94,185 @@ public class MatVectorToImgConverter extends AbstractConverter< MatVector, Rando
 	@Override
 	public < T > T convert( Object o, Class< T > type ) {
 		MatVector img = ( MatVector ) o;
-		MatToImgConverter converter = new MatToImgConverter();
-		List< T > ijImgs = new ArrayList< T >( ( int ) img.size() );
-		for ( int i = 0; i < img.size(); i++ ) {
-			ijImgs.add( ( T ) converter.convert( img.get( i ), type ) );
+		return ( T ) toImg( img, img.size() );
+	}
+
+	/**
+	 * Creates an image from a vector of 2D Mats, stacking the Mats along the
+	 * given dimensions beyond X and Y. This is the inverse of
+	 * {@link ImgToMatVectorConverter#toMatVector(RandomAccessibleInterval)}:
+	 * e.g. {@code toImg( mats, Z, T )} turns a vector of {@code Z * T} Mats
+	 * back into an {@code X x Y x Z x T} image.
+	 * 
+	 * @param mats
+	 *            a vector of 2D Mats of equal size and type
+	 * @param dims
+	 *            the sizes of the dimensions beyond X and Y, the first one
+	 *            varying fastest in the vector
+	 * @return An image containing the data of the Mats.
+	 * @throws IllegalArgumentException
+	 *             if the vector is empty, a dimension is not positive or the
+	 *             number of Mats does not match the dimensions.
+	 */
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	public static RandomAccessibleInterval< ? > toImg( final MatVector mats, final long... dims ) {
+		if ( mats.empty() )
+			throw new IllegalArgumentException( "Empty MatVector" );
+		long numPlanes = 1;
+		for ( long d : dims ) {
+			if ( d <= 0 )
+				throw new IllegalArgumentException( "Dimensions must be positive, got " + Arrays.toString( dims ) );
+			numPlanes *= d;
+		}
+		if ( numPlanes != mats.size() )
+			throw new IllegalArgumentException( "Expected " + numPlanes + " Mats, but the vector holds " + mats.size() );
+		List< RandomAccessibleInterval > level = new ArrayList<>( ( int ) mats.size() );
+		for ( int i = 0; i < mats.size(); i++ )
+			level.add( MatToImgConverter.convert( mats.get( i ) ) );
+		for ( long d : dims ) {
+			final List< RandomAccessibleInterval > stacked = new ArrayList<>( ( int ) ( level.size() / d ) );
+			for ( int i = 0; i < level.size(); i += d )
+				stacked.add( Views.stack( ( List ) level.subList( i, ( int ) ( i + d ) ) ) );
+			level = stacked;
+		}
+		return level.get( 0 );
+	}
+
+	/**
+	 * Copies the Mats of the given vector, in parallel, into one contiguous
+	 * {@link ArrayImg} of size {@code X x Y x N}.
+	 * 
+	 * @param mats
+	 *            a vector of 2D, 1 channel Mats of equal size and type
+	 * @return An image containing the data of the Mats.
+	 */
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	public static ArrayImg< ?, ? > toArrayImg( final MatVector mats ) {
+		final Mat first = checkPlanes( mats );
+		final NativeType type = MatToImgConverter.getType( first.depth() );
+		final ArrayImg< ?, ? > img = new ArrayImgFactory( type ).create( first.cols(), first.rows(), mats.size() );
+		final Object array = ( ( ArrayDataAccess< ? > ) img.update( null ) ).getCurrentStorageArray();
+		final int planeSize = first.cols() * first.rows();
+		Parallelization.getTaskExecutor().forEach( planeIndices( mats ),
+				i -> MatToImgConverter.copyToArray( mats.get( i ), array, i * planeSize ) );
+		return img;
+	}
+
+	/**
+	 * Copies the Mats of the given vector, in parallel, into the planes of a
+	 * {@link PlanarImg} of size {@code X x Y x N}.
+	 * 
+	 * @param mats
+	 *            a vector of 2D, 1 channel Mats of equal size and type
+	 * @return An image containing the data of the Mats.
+	 */
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	public static PlanarImg< ?, ? > toPlanarImg( final MatVector mats ) {
+		final Mat first = checkPlanes( mats );
+		final NativeType type = MatToImgConverter.getType( first.depth() );
+		final List< ArrayDataAccess > planes = Parallelization.getTaskExecutor().forEachApply( planeIndices( mats ),
+				i -> toAccess( mats.get( i ) ) );
+		final PlanarImg img = new PlanarImg( planes, new long[] { first.cols(), first.rows(), mats.size() }, type.getEntitiesPerPixel() );
+		img.setLinkedType( type.getNativeTypeFactory().createLinkedType( img ) );
+		return img;
+	}
+
+	private static ArrayDataAccess< ? > toAccess( final Mat mat ) {
+		switch ( mat.depth() ) {
+		case CvType.CV_8U:
+		case CvType.CV_8S:
+			return new ByteArray( MatToImgConverter.toByteArray( mat ) );
+		case CvType.CV_16U:
+		case CvType.CV_16S:
+			return new ShortArray( MatToImgConverter.toShortArray( mat ) );
+		case CvType.CV_32S:
+			return new IntArray( MatToImgConverter.toIntArray( mat ) );
+		case CvType.CV_16F:
+		case CvType.CV_32F:
+			return new FloatArray( MatToImgConverter.toFloatArray( mat ) );
+		case CvType.CV_64F:
+			return new DoubleArray( MatToImgConverter.toDoubleArray( mat ) );
+		default:
+			throw new UnsupportedOperationException( "Unsupported CvType value: " + mat.depth() );
 		}
-		return ( T ) Views.stack( ( List< ? extends RandomAccessibleInterval< T > > ) ijImgs );
+	}
+
+	/**
+	 * Checks that the vector holds 2D, 1 channel Mats of equal size and type.
+	 * 
+	 * @return the first Mat of the vector
+	 */
+	private static Mat checkPlanes( final MatVector mats ) {
+		if ( mats.empty() )
+			throw new IllegalArgumentException( "Empty MatVector" );
+		final Mat first = mats.get( 0 );
+		if ( first.dims() > 2 || first.channels() > 1 )
+			throw new IllegalArgumentException( "Only vectors of 2 dimensional, 1 channel Mats are supported here" );
+		for ( long i = 1; i < mats.size(); i++ ) {
+			final Mat mat = mats.get( i );
+			if ( mat.type() != first.type() || mat.cols() != first.cols() || mat.rows() != first.rows() )
+				throw new IllegalArgumentException( "Mat " + i + " differs in size or type from the first Mat" );
+		}
+		return first;
+	}
+
+	private static List< Integer > planeIndices( final MatVector mats ) {
+		final List< Integer > indices = new ArrayList<>( ( int ) mats.size() );
+		for ( int i = 0; i < mats.size(); i++ )
+			indices.add( i );
+		return indices;
+	}
+
+	/**
+	 * Creates an image over the given MatVector which converts each Mat only
+	 * when its plane is first accessed. Converted planes are cached, and
+	 * evicted again when memory runs low.
+	 * 
+	 * @param mats
+	 *            a vector of 2D, 1 channel Mats of equal size and type
+	 * @return A lazily loaded {@code X x Y x N} image.
+	 */
+	public static CachedCellImg< ?, ? > toLazyImg( final MatVector mats ) {
+		return toLazyImg( mats, ReadOnlyCachedCellImgOptions.options().cacheType( CacheType.SOFTREF ) );
+	}
+
+	/**
+	 * Creates an image over the given MatVector which converts each Mat only
+	 * when its plane is first accessed. At most {@code maxCachedPlanes}
+	 * converted planes are kept, evicting the least recently used ones.
+	 * 
+	 * @param mats
+	 *            a vector of 2D, 1 channel Mats of equal size and type
+	 * @param maxCachedPlanes
+	 *            the number of converted planes to keep in memory
+	 * @return A lazily loaded {@code X x Y x N} image.
+	 */
+	public static CachedCellImg< ?, ? > toLazyImg( final MatVector mats, final long maxCachedPlanes ) {
+		return toLazyImg( mats, ReadOnlyCachedCellImgOptions.options().cacheType( CacheType.BOUNDED ).maxCacheSize( maxCachedPlanes ) );
+	}
+
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	private static CachedCellImg< ?, ? > toLazyImg( final MatVector mats, final ReadOnlyCachedCellImgOptions options ) {
+		if ( mats.empty() )
+			throw new IllegalArgumentException( "Empty MatVector" );
+		final Mat first = mats.get( 0 );
+		if ( first.dims() > 2 || first.channels() > 1 )
+			throw new IllegalArgumentException( "Only vectors of 2 dimensional, 1 channel Mats are supported here" );
+		final NativeType type = MatToImgConverter.getType( first.depth() );
+		return toLazyImg( mats, type, options.cellDimensions( first.cols(), first.rows(), 1 ) );
+	}
+
+	private static < T extends NativeType< T > > CachedCellImg< T, ? > toLazyImg( final MatVector mats, final T type, final ReadOnlyCachedCellImgOptions options ) {
+		final Mat first = mats.get( 0 );
+		final long[] dims = { first.cols(), first.rows(), mats.size() };
+		final CellLoader< T > loader = cell -> {
+			final long z = cell.min( 2 );
+			final Mat mat = mats.get( z );
+			if ( mat.type() != first.type() || mat.cols() != first.cols() || mat.rows() != first.rows() )
+				throw new IllegalArgumentException( "Mat " + z + " differs in size or type from the first Mat" );
+			MatToImgConverter.convert( mat, Views.hyperSlice( cell, 2, z ) );
+		};
+		return new ReadOnlyCachedCellImgFactory( options ).create( dims, type, loader );
 	}
 
 	@Override
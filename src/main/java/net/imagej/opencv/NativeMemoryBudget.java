@@ -0,0 +1,410 @@
+/*-
+ * #%L
+ * ImageJ/OpenCV Integration
+ * %%
+ * Copyright (C) 2019 - 2024 ImageJ2 developers.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imagej.opencv;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.bytedeco.javacpp.Pointer;
+import org.bytedeco.javacpp.PointerScope;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.MatVector;
+import org.opencv.core.CvType;
+
+/**
+ * A budget for the native memory of the Mats allocated by the converters, so
+ * that many threads converting large images cannot together exceed the
+ * memory available to the process. The Mats allocated by
+ * {@link ImgToMatConverter#toMat(net.imglib2.RandomAccessibleInterval, NativeMemoryBudget)},
+ * {@link ImgToMatVectorConverter#toMatVector(net.imglib2.RandomAccessibleInterval, NativeMemoryBudget)},
+ * and by a {@link MatImgFactory} or {@link MatPool} created with a budget
+ * reserve their size against it.
+ * <p>
+ * A reservation is shared by the returned Mat and the headers of its memory
+ * created by the converters, such as the planes of a {@link MatVector} or
+ * images wrapping the Mat. It is released once all of them are closed, freed
+ * by their {@link PointerScope} or garbage collected. If an allocation does
+ * not fit, the {@link Policy} decides whether to wait for such a release.
+ * An allocation larger than the whole budget always fails.
+ * </p>
+ */
+public final class NativeMemoryBudget {
+
+	/** What to do when an allocation does not fit into the budget. */
+	public enum Policy {
+		/**
+		 * Wait until other Mats of the budget are released, or throw an
+		 * {@link OutOfMemoryError} once the timeout elapsed.
+		 */
+		BLOCK,
+		/** Throw an {@link OutOfMemoryError} right away. */
+		FAIL
+	}
+
+	/** How long allocations wait for memory by default. */
+	public static final long DEFAULT_TIMEOUT_MILLIS = 60_000;
+
+	private final long limit;
+
+	private final Policy policy;
+
+	private final long timeoutMillis;
+
+	/** Number of allocations waiting for memory. */
+	private int waiting;
+
+	private long used;
+
+	private long peak;
+
+	/**
+	 * @param limit
+	 *            The maximum number of bytes reserved at any one time.
+	 * @param policy
+	 *            What to do when an allocation does not fit.
+	 */
+	public NativeMemoryBudget( final long limit, final Policy policy ) {
+		this( limit, policy, DEFAULT_TIMEOUT_MILLIS );
+	}
+
+	/**
+	 * @param limit
+	 *            The maximum number of bytes reserved at any one time.
+	 * @param policy
+	 *            What to do when an allocation does not fit.
+	 * @param timeoutMillis
+	 *            How long allocations wait for memory with
+	 *            {@link Policy#BLOCK}.
+	 */
+	public NativeMemoryBudget( final long limit, final Policy policy, final long timeoutMillis ) {
+		if ( limit < 0 )
+			throw new IllegalArgumentException( "Negative limit: " + limit );
+		if ( timeoutMillis < 0 )
+			throw new IllegalArgumentException( "Negative timeout: " + timeoutMillis );
+		this.limit = limit;
+		this.policy = policy;
+		this.timeoutMillis = timeoutMillis;
+	}
+
+	public long getLimit() {
+		return limit;
+	}
+
+	public Policy getPolicy() {
+		return policy;
+	}
+
+	public long getTimeoutMillis() {
+		return timeoutMillis;
+	}
+
+	/** Returns the number of bytes currently reserved by live Mats. */
+	public synchronized long getUsed() {
+		return used;
+	}
+
+	/** Returns the highest number of bytes reserved at any one time. */
+	public synchronized long getPeak() {
+		return peak;
+	}
+
+	/** Resets the peak to the number of bytes currently reserved. */
+	public synchronized void resetPeak() {
+		peak = used;
+	}
+
+	/** Returns the number of allocations currently waiting for memory. */
+	synchronized int getWaiting() {
+		return waiting;
+	}
+
+	/**
+	 * Allocates a Mat of the given sizes and type, reserving its memory.
+	 * 
+	 * @throws OutOfMemoryError
+	 *             if the Mat does not fit into the budget.
+	 */
+	Mat allocate( final int[] sizes, final int type ) {
+		final Reservation reservation = reserve( getBytes( sizes, type ), 1 );
+		try {
+			return new BudgetedMat( sizes, type, reservation );
+		}
+		catch ( final RuntimeException | Error e ) {
+			reservation.drop();
+			throw e;
+		}
+	}
+
+	/**
+	 * Allocates the given number of Mats of the given sizes and type, e.g.
+	 * the planes of a stack. Their memory is reserved at once, so that a
+	 * stack larger than the budget fails instead of waiting for its own
+	 * planes to be released.
+	 * 
+	 * @throws OutOfMemoryError
+	 *             if the Mats do not fit into the budget.
+	 */
+	List< Mat > allocate( final int count, final int[] sizes, final int type ) {
+		final Reservation reservation = reserve( count * getBytes( sizes, type ), count );
+		final List< Mat > mats = new ArrayList<>( count );
+		try {
+			for ( int i = 0; i < count; i++ )
+				mats.add( new BudgetedMat( sizes, type, reservation ) );
+		}
+		catch ( final RuntimeException | Error e ) {
+			for ( final Mat mat : mats )
+				mat.close();
+			for ( int i = mats.size(); i < count; i++ )
+				reservation.drop();
+			throw e;
+		}
+		return mats;
+	}
+
+	/**
+	 * Reallocates the given Mat as {@link Mat#create} does, if its sizes or
+	 * type differ from the given ones. A Mat allocated within a budget
+	 * releases its reservation and reserves its new size in the same budget,
+	 * it is left empty if that does not fit.
+	 * 
+	 * @throws OutOfMemoryError
+	 *             if the new memory of the Mat does not fit into its budget.
+	 */
+	static void create( final Mat mat, final int[] sizes, final int type ) {
+		if ( ImgToMatConverter.hasLayout( mat, sizes, type ) )
+			return;
+		if ( mat instanceof BudgetedMat )
+			( ( BudgetedMat ) mat ).recreate( sizes, type );
+		else
+			mat.create( sizes.length, sizes, type );
+	}
+
+	/**
+	 * Returns a new header of the given Mat, sharing its reference counted
+	 * data and, if it was allocated within a budget, its reservation.
+	 */
+	static Mat share( final Mat mat ) {
+		if ( mat instanceof BudgetedMat ) {
+			final Reservation reservation = ( ( BudgetedMat ) mat ).reservation.get();
+			if ( reservation != null && reservation.retain() )
+				return new BudgetedMat( mat, reservation );
+		}
+		return new Mat( mat );
+	}
+
+	/**
+	 * Puts the given Mats into a new vector. The vector only copies the
+	 * headers of the Mats, so it keeps Mats allocated within a budget, and
+	 * with them their reservations, for as long as it is alive. Closing the
+	 * vector closes them.
+	 */
+	static MatVector toMatVector( final List< Mat > mats ) {
+		final MatVector vector = mats.stream().anyMatch( mat -> mat instanceof BudgetedMat )
+				? new BudgetedMatVector( mats )
+				: new MatVector( mats.size() );
+		for ( int i = 0; i < mats.size(); i++ )
+			vector.put( i, mats.get( i ) );
+		return vector;
+	}
+
+	/**
+	 * Detaches the given Mat, and its claim on a reservation if it has one,
+	 * from the given scope.
+	 */
+	static void detach( final PointerScope scope, final Mat mat ) {
+		scope.detach( mat );
+		if ( mat instanceof BudgetedMat )
+			scope.detach( ( ( BudgetedMat ) mat ).claim );
+	}
+
+	private static long getBytes( final int[] sizes, final int type ) {
+		long bytes = CvType.ELEM_SIZE( type );
+		for ( final int size : sizes )
+			bytes *= size;
+		return bytes;
+	}
+
+	/**
+	 * Reserves the given number of bytes for the given number of holders,
+	 * waiting for releases according to the policy.
+	 */
+	private synchronized Reservation reserve( final long bytes, final int owners ) {
+		if ( used + bytes > limit ) {
+			if ( bytes > limit || policy == Policy.FAIL )
+				throw new OutOfMemoryError( "Cannot allocate " + bytes + " bytes of Mats, " + used +
+						" of the native memory budget of " + limit + " bytes are in use" );
+			final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos( timeoutMillis );
+			waiting++;
+			try {
+				while ( used + bytes > limit ) {
+					final long remaining = deadline - System.nanoTime();
+					if ( remaining <= 0 )
+						throw new OutOfMemoryError( "Timed out after " + timeoutMillis + " ms waiting for " + bytes + " bytes of Mats, " +
+								used + " of the native memory budget of " + limit + " bytes are in use" );
+					TimeUnit.NANOSECONDS.timedWait( this, remaining );
+				}
+			}
+			catch ( final InterruptedException e ) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException( "Interrupted while waiting for native memory", e );
+			}
+			finally {
+				waiting--;
+			}
+		}
+		used += bytes;
+		peak = Math.max( peak, used );
+		return new Reservation( this, bytes, owners );
+	}
+
+	private synchronized void release( final long bytes ) {
+		used -= bytes;
+		notifyAll();
+	}
+
+	/**
+	 * Reserved bytes, shared by all headers of the same memory. The bytes are
+	 * given back to the budget when the last header drops the reservation.
+	 */
+	private static final class Reservation {
+
+		private final NativeMemoryBudget budget;
+
+		private final long bytes;
+
+		/** Number of headers holding the reservation, guarded by the budget. */
+		private int owners;
+
+		private Reservation( final NativeMemoryBudget budget, final long bytes, final int owners ) {
+			this.budget = budget;
+			this.bytes = bytes;
+			this.owners = owners;
+		}
+
+		/** Adds a holder, unless the reservation was released already. */
+		private boolean retain() {
+			synchronized ( budget ) {
+				if ( owners == 0 )
+					return false;
+				owners++;
+				return true;
+			}
+		}
+
+		private void drop() {
+			synchronized ( budget ) {
+				if ( --owners == 0 )
+					budget.release( bytes );
+			}
+		}
+	}
+
+	/**
+	 * The claim of one header on a {@link Reservation}. Its deallocator drops
+	 * the reservation, so it is released together with its header, by the
+	 * same {@link PointerScope} or garbage collection.
+	 */
+	private static final class Claim extends Pointer {
+
+		private Claim( final AtomicReference< Reservation > reservation ) {
+			deallocator( () -> {
+				final Reservation claimed = reservation.getAndSet( null );
+				if ( claimed != null )
+					claimed.drop();
+			} );
+		}
+	}
+
+	/** A Mat that drops its reservation when it is released. */
+	private static final class BudgetedMat extends Mat {
+
+		private final NativeMemoryBudget budget;
+
+		private final AtomicReference< Reservation > reservation;
+
+		private final Claim claim;
+
+		private BudgetedMat( final int[] sizes, final int type, final Reservation reservation ) {
+			super( sizes.length, sizes, type );
+			budget = reservation.budget;
+			this.reservation = new AtomicReference<>( reservation );
+			claim = new Claim( this.reservation );
+		}
+
+		private BudgetedMat( final Mat mat, final Reservation reservation ) {
+			super( mat );
+			budget = reservation.budget;
+			this.reservation = new AtomicReference<>( reservation );
+			claim = new Claim( this.reservation );
+		}
+
+		/**
+		 * Reallocates the Mat. OpenCV releases the old memory before
+		 * allocating the new one, unless other headers still use it, in which
+		 * case they still hold its reservation.
+		 */
+		private void recreate( final int[] sizes, final int type ) {
+			final Reservation old = reservation.getAndSet( null );
+			if ( old != null )
+				old.drop();
+			release();
+			reservation.set( budget.reserve( getBytes( sizes, type ), 1 ) );
+			create( sizes.length, sizes, type );
+		}
+
+		@Override
+		public void close() {
+			super.close();
+			claim.close();
+		}
+	}
+
+	/**
+	 * A vector keeping the Mats it was filled with, whose headers it copied,
+	 * and with them their reservations.
+	 */
+	private static final class BudgetedMatVector extends MatVector {
+
+		private final List< Mat > mats;
+
+		private BudgetedMatVector( final List< Mat > mats ) {
+			super( mats.size() );
+			this.mats = mats;
+		}
+
+		@Override
+		public void close() {
+			super.close();
+			for ( final Mat mat : mats )
+				mat.close();
+		}
+	}
+}
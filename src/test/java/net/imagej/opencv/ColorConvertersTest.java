@@ -0,0 +1,77 @@
+/*-
+ * #%L
+ * ImageJ/OpenCV Integration
+ * %%
+ * Copyright (C) 2019 - 2024 ImageJ2 developers.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imagej.opencv;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.junit.Test;
+import org.opencv.core.CvType;
+
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.IntArray;
+import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.view.Views;
+
+public class ColorConvertersTest {
+
+	private final ArrayImg< ARGBType, IntArray > image = ArrayImgs.argbs( new int[] {
+			ARGBType.rgba( 1, 2, 3, 4 ), ARGBType.rgba( 5, 6, 7, 8 ) }, 2, 1 );
+
+	@Test
+	public void testARGBImageToMat() {
+		final Mat mat = ImgToMatConverter.toMat( image );
+		assertEquals( CvType.CV_8UC4, mat.type() );
+		assertEquals( 2, mat.cols() );
+		assertArrayEquals( new byte[] { 3, 2, 1, 4, 7, 6, 5, 8 }, MatToImgConverter.toByteArray( mat ) );
+
+		// a view is copied pixel by pixel
+		final Mat copy = ImgToMatConverter.toMat( Views.interval( image, image ) );
+		assertArrayEquals( new byte[] { 3, 2, 1, 4, 7, 6, 5, 8 }, MatToImgConverter.toByteArray( copy ) );
+	}
+
+	@Test
+	public void testARGBImageToBGRMat() {
+		final Mat mat = ImgToMatConverter.getBGRMat( image );
+		assertEquals( CvType.CV_8UC3, mat.type() );
+		assertArrayEquals( new byte[] { 3, 2, 1, 7, 6, 5 }, MatToImgConverter.toByteArray( mat ) );
+	}
+
+	@Test
+	public void testFullCircleConversion() {
+		final RandomAccessibleInterval< ARGBType > bgra = MatToImgConverter.toARGBImg( ImgToMatConverter.toMat( image ) );
+		assertEquals( image.getAt( 1, 0 ), bgra.getAt( 1, 0 ) );
+
+		final RandomAccessibleInterval< ARGBType > bgr = MatToImgConverter.toARGBImg( ImgToMatConverter.getBGRMat( image ) );
+		assertEquals( ARGBType.rgba( 5, 6, 7, 255 ), bgr.getAt( 1, 0 ).get() );
+	}
+}
@@ -0,0 +1,85 @@
+/*-
+ * #%L
+ * ImageJ/OpenCV Integration
+ * %%
+ * Copyright (C) 2019 - 2024 ImageJ2 developers.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imagej.opencv;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.junit.Test;
+import org.opencv.core.CvType;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.type.numeric.complex.ComplexDoubleType;
+import net.imglib2.type.numeric.complex.ComplexFloatType;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.Views;
+
+public class ComplexConvertersTest {
+
+	@Test
+	public void testComplexFloatImageToMat() {
+		final float[] data = { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12 };
+		final ArrayImg< ComplexFloatType, FloatArray > image = ArrayImgs.complexFloats( data, 3, 2 );
+
+		final Mat mat = ImgToMatConverter.toMat( image );
+		assertEquals( CvType.CV_32FC2, mat.type() );
+		assertEquals( 2, mat.rows() );
+		assertEquals( 3, mat.cols() );
+		assertArrayEquals( data, MatToImgConverter.toFloatArray( mat ), 0f );
+
+		// a view is copied pixel by pixel
+		assertArrayEquals( data, MatToImgConverter.toFloatArray( ImgToMatConverter.toMat( Views.interval( image, image ) ) ), 0f );
+	}
+
+	@Test
+	public void testComplexMatToImage() {
+		final double[] data = { 1, -1, 2, -2, 3, -3, 4, -4 };
+		final Mat mat = ImgToMatConverter.toMat( ArrayImgs.complexDoubles( data, 2, 2 ) );
+
+		final RandomAccessibleInterval< ComplexDoubleType > image = MatToImgConverter.toComplexDoubleImg( mat );
+		assertArrayEquals( new long[] { 2, 2 }, Intervals.dimensionsAsLongArray( image ) );
+		final RandomAccess< ComplexDoubleType > ra = image.randomAccess();
+		ra.setPosition( new long[] { 0, 1 } );
+		assertEquals( 3, ra.get().getRealDouble(), 0 );
+		assertEquals( -3, ra.get().getImaginaryDouble(), 0 );
+	}
+
+	@Test
+	public void testWrappedComplexImageWritesMat() {
+		final Mat mat = ImgToMatConverter.toMat( ArrayImgs.complexFloats( 2, 1 ) );
+		final ArrayImg< ComplexFloatType, MatFloatAccess > image = MatToImgConverter.wrapComplexFloatImg( mat );
+		image.getAt( 1, 0 ).set( 5, 6 );
+		assertArrayEquals( new float[] { 0, 0, 5, 6 }, MatToImgConverter.toFloatArray( mat ), 0f );
+	}
+}
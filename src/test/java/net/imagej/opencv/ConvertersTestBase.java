@@ -90,6 +90,14 @@ public abstract class ConvertersTestBase {
 			assertEquals( byteData1.length, byteData2.length );
 			Assert.assertArrayEquals( byteData1, byteData2 );
 			break;
+		case CvType.CV_16U:
+		case CvType.CV_16S:
+			short[] shortData1 = MatToImgConverter.toShortArray( mat1 );
+			short[] shortData2 = MatToImgConverter.toShortArray( mat2 );
+
+			assertEquals( shortData1.length, shortData2.length );
+			Assert.assertArrayEquals( shortData1, shortData2 );
+			break;
 		case CvType.CV_32S:
 			int[] intData1 = MatToImgConverter.toIntArray( mat1 );
 			int[] intData2 = MatToImgConverter.toIntArray( mat2 );
@@ -0,0 +1,71 @@
+/*-
+ * #%L
+ * ImageJ/OpenCV Integration
+ * %%
+ * Copyright (C) 2019 - 2024 ImageJ2 developers.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imagej.opencv;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.junit.Test;
+import org.opencv.core.CvType;
+
+import net.imglib2.Cursor;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.LongArray;
+import net.imglib2.type.logic.BitType;
+import net.imglib2.view.Views;
+
+public class MaskConvertersTest {
+
+	@Test
+	public void testFullCircleConversion() {
+		// 70 pixels span two words of the packed storage
+		final ArrayImg< BitType, LongArray > mask = ArrayImgs.bits( 10, 7 );
+		final byte[] expected = new byte[ 70 ];
+		final Cursor< BitType > cursor = mask.cursor();
+		for ( int i = 0; i < expected.length; i++ ) {
+			final boolean set = i % 3 == 0;
+			cursor.next().set( set );
+			expected[ i ] = set ? ( byte ) 255 : 0;
+		}
+
+		final Mat mat = ImgToMatConverter.toMat( mask );
+		assertEquals( CvType.CV_8UC1, mat.type() );
+		assertEquals( 7, mat.rows() );
+		assertEquals( 10, mat.cols() );
+		assertArrayEquals( expected, MatToImgConverter.toByteArray( mat ) );
+
+		// a view is copied pixel by pixel
+		assertArrayEquals( expected, MatToImgConverter.toByteArray( ImgToMatConverter.toMaskMat( Views.interval( mask, mask ) ) ) );
+
+		final ArrayImg< BitType, LongArray > back = MatToImgConverter.toBitImg( mat );
+		assertArrayEquals( mask.update( null ).getCurrentStorageArray(), back.update( null ).getCurrentStorageArray() );
+	}
+}
@@ -0,0 +1,82 @@
+/*-
+ * #%L
+ * ImageJ/OpenCV Integration
+ * %%
+ * Copyright (C) 2019 - 2024 ImageJ2 developers.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imagej.opencv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.junit.Test;
+import org.opencv.core.CvType;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.img.Img;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.FloatType;
+
+public class MatImgFactoryTest {
+
+	@Test
+	public void testToMatReturnsBackingMat() {
+		final Img< FloatType > img = new MatImgFactory<>( new FloatType() ).create( 4, 3 );
+		final RandomAccess< FloatType > ra = img.randomAccess();
+		ra.setPosition( new long[] { 3, 1 } );
+		ra.get().set( 42f );
+
+		final Mat mat = ImgToMatConverter.toMat( img );
+		assertEquals( CvType.CV_32FC1, mat.type() );
+		assertEquals( 3, mat.rows() );
+		assertEquals( 4, mat.cols() );
+		assertEquals( 42f, MatToImgConverter.toFloatArray( mat )[ 7 ], 0f );
+		assertEquals( mat.data().address(), ImgToMatConverter.toMat( img ).data().address() );
+
+		// closing the returned Mat does not free the image
+		mat.close();
+		assertEquals( 42f, ra.get().get(), 0f );
+	}
+
+	@Test
+	public void testUnsignedShortImg() {
+		final Img< UnsignedShortType > img = new MatImgFactory<>( new UnsignedShortType() ).create( 4, 3 );
+		img.firstElement().set( 60000 );
+
+		final Mat mat = ImgToMatConverter.toMat( img );
+		assertEquals( CvType.CV_16UC1, mat.type() );
+		assertEquals( 60000, mat.data().getShort() & 0xffff );
+	}
+
+	@Test
+	public void testWrappedMultiChannelMatIsCopied() {
+		final Mat mat = new Mat( 3, 4, CvType.CV_8UC3 );
+		final Mat copy = ImgToMatConverter.toMat( MatToImgConverter.wrap( mat ) );
+		assertEquals( CvType.CV_8UC1, copy.type() );
+		assertEquals( 3, copy.dims() );
+		assertNotEquals( mat.data().address(), copy.data().address() );
+	}
+}
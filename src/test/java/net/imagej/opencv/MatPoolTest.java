@@ -0,0 +1,117 @@
+/*-
+ * #%L
+ * ImageJ/OpenCV Integration
+ * %%
+ * Copyright (C) 2019 - 2024 ImageJ2 developers.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imagej.opencv;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.junit.Test;
+import org.opencv.core.CvType;
+
+import net.imglib2.img.array.ArrayImgs;
+
+public class MatPoolTest {
+
+	@Test
+	public void testMatsAreReused() {
+		try (MatPool pool = new MatPool( 4, 1 << 20 )) {
+			final Mat first = ImgToMatConverter.toMat( ArrayImgs.floats( new float[] { 1, 2, 3, 4, 5, 6 }, 3, 2 ), pool );
+			pool.release( first );
+			assertEquals( 1, pool.size() );
+			assertEquals( 24, pool.bytes() );
+
+			final Mat second = ImgToMatConverter.toMat( ArrayImgs.floats( new float[] { 6, 5, 4, 3, 2, 1 }, 3, 2 ), pool );
+			assertSame( first, second );
+			assertArrayEquals( new float[] { 6, 5, 4, 3, 2, 1 }, MatToImgConverter.toFloatArray( second ), 0f );
+
+			// another shape is not taken from the pool
+			ImgToMatConverter.toMat( ArrayImgs.floats( 2, 3 ), pool );
+			assertEquals( 1, pool.hits() );
+			assertEquals( 2, pool.misses() );
+			assertEquals( 0, pool.size() );
+		}
+	}
+
+	@Test
+	public void testLeastRecentlyReleasedMatsAreEvicted() {
+		final MatPool pool = new MatPool( 2, 1 << 20 );
+		final Mat a = pool.acquire( new int[] { 2, 2 }, CvType.CV_8UC1 );
+		final Mat b = pool.acquire( new int[] { 2, 2 }, CvType.CV_8UC1 );
+		final Mat c = pool.acquire( new int[] { 2, 2 }, CvType.CV_8UC1 );
+		pool.release( a );
+		pool.release( b );
+		pool.release( c );
+		assertEquals( 2, pool.size() );
+		assertEquals( 1, pool.evictions() );
+		assertTrue( a.isNull() );
+		assertFalse( b.isNull() );
+
+		pool.close();
+		assertEquals( 0, pool.size() );
+		assertTrue( c.isNull() );
+	}
+
+	@Test
+	public void testDuplicateReleasesAreIgnored() {
+		try (MatPool pool = new MatPool( 1, 1 << 20 )) {
+			final Mat a = pool.acquire( new int[] { 2, 2 }, CvType.CV_8UC1 );
+			pool.release( a );
+			pool.release( a );
+			assertEquals( 1, pool.size() );
+			assertEquals( 4, pool.bytes() );
+			assertEquals( 0, pool.evictions() );
+
+			// a is evicted, releasing it again does not put it back
+			final Mat b = pool.acquire( new int[] { 3, 3 }, CvType.CV_8UC1 );
+			pool.release( b );
+			assertTrue( a.isNull() );
+			pool.release( a );
+			assertEquals( 1, pool.size() );
+			assertSame( b, pool.acquire( new int[] { 3, 3 }, CvType.CV_8UC1 ) );
+			assertEquals( 0, pool.size() );
+		}
+	}
+
+	@Test
+	public void testByteLimit() {
+		final MatPool pool = new MatPool( 10, 100 );
+		// 200 bytes, too large to be kept
+		pool.release( pool.acquire( new int[] { 10, 10 }, CvType.CV_16UC1 ) );
+		assertEquals( 0, pool.size() );
+		assertEquals( 1, pool.evictions() );
+
+		pool.release( pool.acquire( new int[] { 10, 10 }, CvType.CV_8UC1 ) );
+		assertEquals( 1, pool.size() );
+		assertEquals( 100, pool.bytes() );
+	}
+}
@@ -0,0 +1,85 @@
+/*-
+ * #%L
+ * ImageJ/OpenCV Integration
+ * %%
+ * Copyright (C) 2019 - 2024 ImageJ2 developers.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imagej.opencv;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.MatVector;
+import org.junit.Test;
+import org.opencv.core.CvType;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.util.Intervals;
+
+public class MatVectorToImgConverterTest {
+
+	@SuppressWarnings( "unchecked" )
+	@Test
+	public void testLazyImgReadsPlanes() {
+		checkPlanes( ( RandomAccessibleInterval< UnsignedByteType > ) MatVectorToImgConverter.toLazyImg( createMats(), 1 ) );
+	}
+
+	@SuppressWarnings( "unchecked" )
+	@Test
+	public void testContiguousImgs() {
+		final MatVector mats = createMats();
+		checkPlanes( ( RandomAccessibleInterval< UnsignedByteType > ) MatVectorToImgConverter.toArrayImg( mats ) );
+		checkPlanes( ( RandomAccessibleInterval< UnsignedByteType > ) MatVectorToImgConverter.toPlanarImg( mats ) );
+	}
+
+	private static void checkPlanes( final RandomAccessibleInterval< UnsignedByteType > img ) {
+		assertArrayEquals( new long[] { 4, 2, 3 }, Intervals.dimensionsAsLongArray( img ) );
+
+		final RandomAccess< UnsignedByteType > ra = img.randomAccess();
+		for ( int z = 2; z >= 0; z-- ) {
+			ra.setPosition( new long[] { 3, 1, z } );
+			assertEquals( 10 * z + 7, ra.get().get() );
+		}
+	}
+
+	/**
+	 * Creates a vector of three 4 x 2 Mats.
+	 */
+	private static MatVector createMats() {
+		final MatVector mats = new MatVector( 3 );
+		for ( int z = 0; z < 3; z++ ) {
+			final Mat mat = new Mat( 2, 4, CvType.CV_8UC1 );
+			final byte[] data = new byte[ 8 ];
+			for ( int i = 0; i < data.length; i++ )
+				data[ i ] = ( byte ) ( 10 * z + i );
+			mat.data().put( data );
+			mats.put( z, mat );
+		}
+		return mats;
+	}
+}
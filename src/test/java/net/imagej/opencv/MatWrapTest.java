@@ -0,0 +1,107 @@
+/*-
+ * #%L
+ * ImageJ/OpenCV Integration
+ * %%
+ * Copyright (C) 2019 - 2024 ImageJ2 developers.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imagej.opencv;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.javacpp.FloatPointer;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Rect;
+import org.junit.Test;
+import org.opencv.core.CvType;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.real.FloatType;
+
+public class MatWrapTest {
+
+	@Test
+	public void testWrappedImgReadsMat() {
+		final Mat mat = new Mat( 3, 4, CvType.CV_32FC1 );
+		final float[] data = new float[ 12 ];
+		for ( int i = 0; i < data.length; i++ )
+			data[ i ] = i;
+		new FloatPointer( mat.data() ).put( data );
+
+		final ArrayImg< FloatType, MatFloatAccess > img = MatToImgConverter.wrapFloatImg( mat );
+		assertEquals( 4, img.dimension( 0 ) );
+		assertEquals( 3, img.dimension( 1 ) );
+
+		final RandomAccess< FloatType > ra = img.randomAccess();
+		ra.setPosition( new long[] { 1, 2 } );
+		assertEquals( 9f, ra.get().get(), 0f );
+	}
+
+	@Test
+	public void testWrappedImgWritesMat() {
+		final Mat mat = new Mat( 2, 3, CvType.CV_8UC1 );
+		new BytePointer( mat.data() ).put( new byte[ 6 ] );
+
+		final ArrayImg< UnsignedByteType, MatByteAccess > img = MatToImgConverter.wrapUnsignedByteImg( mat );
+		final RandomAccess< UnsignedByteType > ra = img.randomAccess();
+		ra.setPosition( new long[] { 2, 1 } );
+		ra.get().set( 200 );
+
+		assertArrayEquals( new byte[] { 0, 0, 0, 0, 0, ( byte ) 200 }, MatToImgConverter.toByteArray( mat ) );
+		assertEquals( mat.data().address(), img.update( null ).getMat().data().address() );
+	}
+
+	@Test
+	public void testWrappedImgOutlivesMat() {
+		final Mat mat = new Mat( 2, 3, CvType.CV_32FC1 );
+		new FloatPointer( mat.data() ).put( new float[] { 1, 2, 3, 4, 5, 6 } );
+
+		final ArrayImg< FloatType, MatFloatAccess > img = MatToImgConverter.wrapFloatImg( mat );
+		mat.close();
+		assertArrayEquals( new float[] { 1, 2, 3, 4, 5, 6 }, ImgToMatConverter.toFloatArray( img ), 0f );
+	}
+
+	@Test
+	public void testSubmatrix() {
+		final Mat mat = new Mat( 4, 4, CvType.CV_8UC1 );
+		final byte[] data = new byte[ 16 ];
+		for ( int i = 0; i < data.length; i++ )
+			data[ i ] = ( byte ) i;
+		mat.data().put( data );
+		final Mat roi = new Mat( mat, new Rect( 1, 1, 2, 2 ) );
+
+		assertArrayEquals( new byte[] { 5, 6, 9, 10 }, MatToImgConverter.toByteArray( roi ) );
+
+		final ArrayImg< UnsignedByteType, MatByteAccess > img = MatToImgConverter.wrapUnsignedByteImg( roi );
+		final RandomAccess< UnsignedByteType > ra = img.randomAccess();
+		ra.setPosition( new long[] { 0, 1 } );
+		assertEquals( 9, ra.get().get() );
+		ra.get().set( 99 );
+		assertEquals( 99, MatToImgConverter.toByteArray( mat )[ 9 ] );
+	}
+}
@@ -0,0 +1,68 @@
+/*-
+ * #%L
+ * ImageJ/OpenCV Integration
+ * %%
+ * Copyright (C) 2019 - 2024 ImageJ2 developers.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imagej.opencv;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.junit.Test;
+import org.opencv.core.CvType;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+
+public class MultiChannelConvertersTest {
+
+	@SuppressWarnings( "unchecked" )
+	@Test
+	public void testFullCircleConversionFromMat() {
+		final Mat mat = new Mat( 2, 3, CvType.CV_8UC3 );
+		final byte[] data = new byte[ 18 ];
+		for ( int i = 0; i < data.length; i++ )
+			data[ i ] = ( byte ) i;
+		mat.data().put( data );
+
+		final RandomAccessibleInterval< UnsignedByteType > img = ( RandomAccessibleInterval< UnsignedByteType > ) MatToImgConverter.convert( mat );
+		assertEquals( 3, img.numDimensions() );
+		assertEquals( 3, img.dimension( 0 ) );
+		assertEquals( 2, img.dimension( 1 ) );
+		assertEquals( 3, img.dimension( 2 ) );
+
+		// pixel x = 1, y = 1 has flat index 4, its third channel is byte 4 * 3 + 2
+		final RandomAccess< UnsignedByteType > ra = img.randomAccess();
+		ra.setPosition( new long[] { 1, 1, 2 } );
+		assertEquals( 14, ra.get().get() );
+
+		final Mat cvMat = ImgToMatConverter.toMultiChannelMat( img );
+		assertEquals( CvType.CV_8UC3, cvMat.type() );
+		assertArrayEquals( data, MatToImgConverter.toByteArray( cvMat ) );
+	}
+}
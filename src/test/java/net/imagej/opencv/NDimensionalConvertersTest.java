@@ -0,0 +1,305 @@
+/*-
+ * #%L
+ * ImageJ/OpenCV Integration
+ * %%
+ * Copyright (C) 2019 - 2024 ImageJ2 developers.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imagej.opencv;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.MatVector;
+import org.junit.Test;
+import org.opencv.core.CvType;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.img.cell.Cell;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.img.cell.CellImg;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.img.cell.LazyCellImg;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.img.planar.PlanarImgs;
+import net.imglib2.parallel.Parallelization;
+import net.imglib2.parallel.TaskExecutor;
+import net.imglib2.parallel.TaskExecutors;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.IntervalIndexer;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.Views;
+
+public class NDimensionalConvertersTest {
+
+	@SuppressWarnings( "unchecked" )
+	@Test
+	public void testFullCircleConversionFromIJ() {
+		final float[] data = new float[ 4 * 3 * 2 ];
+		for ( int i = 0; i < data.length; i++ )
+			data[ i ] = i;
+		final ArrayImg< FloatType, FloatArray > image = ArrayImgs.floats( data, 4, 3, 2 );
+
+		// use a view, so that the pixels are copied one by one
+		final Mat mat = ImgToMatConverter.toMat( Views.interval( image, image ) );
+		assertEquals( 3, mat.dims() );
+		assertEquals( 2, mat.size( 0 ) );
+		assertEquals( 3, mat.size( 1 ) );
+		assertEquals( 4, mat.size( 2 ) );
+		assertArrayEquals( data, MatToImgConverter.toFloatArray( mat ), 0f );
+
+		final RandomAccessibleInterval< FloatType > cvImg = ( RandomAccessibleInterval< FloatType > ) MatToImgConverter.convert( mat );
+		assertArrayEquals( new long[] { 4, 3, 2 }, Intervals.dimensionsAsLongArray( cvImg ) );
+		assertArrayEquals( data, ImgToMatConverter.toFloatArray( cvImg ), 0f );
+	}
+
+	@Test
+	public void testTypedArraysOfStack() {
+		// every plane holds different values, so misplaced rows or planes show
+		final int[] ints = new int[ 5 * 4 * 3 ];
+		final float[] floats = new float[ ints.length ];
+		final double[] doubles = new double[ ints.length ];
+		for ( int i = 0; i < ints.length; i++ ) {
+			ints[ i ] = i * 1000;
+			floats[ i ] = i + 0.5f;
+			doubles[ i ] = i - 0.25;
+		}
+		assertArrayEquals( ints, MatToImgConverter.toIntArray( ImgToMatConverter.toMat( ArrayImgs.ints( ints, 5, 4, 3 ) ) ) );
+		assertArrayEquals( floats, MatToImgConverter.toFloatArray( ImgToMatConverter.toMat( ArrayImgs.floats( floats, 5, 4, 3 ) ) ), 0f );
+		assertArrayEquals( doubles, MatToImgConverter.toDoubleArray( ImgToMatConverter.toMat( ArrayImgs.doubles( doubles, 5, 4, 3 ) ) ), 0 );
+
+		final PlanarImg< FloatType, FloatArray > planar = PlanarImgs.floats( 5, 4, 3 );
+		for ( int i = 0; i < planar.numSlices(); i++ )
+			System.arraycopy( floats, i * 5 * 4, planar.getPlane( i ).getCurrentStorageArray(), 0, 5 * 4 );
+		assertArrayEquals( floats, MatToImgConverter.toFloatArray( ImgToMatConverter.toMat( planar ) ), 0f );
+	}
+
+	@Test
+	public void testMultiThreadedConversion() {
+		final float[] data = new float[ 64 * 48 * 3 ];
+		for ( int i = 0; i < data.length; i++ )
+			data[ i ] = i;
+		// use a view, so that the pixels are copied by the threads one by one
+		final RandomAccessibleInterval< FloatType > image = Views.interval( ArrayImgs.floats( data, 64, 48, 3 ), new long[] { 0, 0, 0 }, new long[] { 63, 47, 2 } );
+
+		final float[] singleThreaded = Parallelization.runSingleThreaded( () -> MatToImgConverter.toFloatArray( ImgToMatConverter.toMat( image ) ) );
+		final float[] multiThreaded = Parallelization.runMultiThreaded( () -> MatToImgConverter.toFloatArray( ImgToMatConverter.toMat( image ) ) );
+		assertArrayEquals( singleThreaded, multiThreaded, 0f );
+		assertArrayEquals( data, multiThreaded, 0f );
+	}
+
+	@SuppressWarnings( "unchecked" )
+	@Test
+	public void testFullCircleConversionThroughMatVector() {
+		final float[] data = new float[ 4 * 3 * 2 * 5 ];
+		for ( int i = 0; i < data.length; i++ )
+			data[ i ] = i;
+		final ArrayImg< FloatType, FloatArray > image = ArrayImgs.floats( data, 4, 3, 2, 5 );
+
+		final MatVector mats = ImgToMatVectorConverter.toMatVector( image );
+		assertEquals( 10, mats.size() );
+		// plane z = 1, t = 3 has index 1 + 2 * 3 and starts at pixel 7 * 4 * 3
+		assertEquals( 84f, MatToImgConverter.toFloatArray( mats.get( 7 ) )[ 0 ], 0f );
+
+		final RandomAccessibleInterval< FloatType > cvImg = ( RandomAccessibleInterval< FloatType > ) MatVectorToImgConverter.toImg( mats, 2, 5 );
+		assertArrayEquals( new long[] { 4, 3, 2, 5 }, Intervals.dimensionsAsLongArray( cvImg ) );
+		assertArrayEquals( data, ImgToMatConverter.toFloatArray( cvImg ), 0f );
+	}
+
+	@Test
+	public void testPlanarImgToMatVectorConversion() {
+		final PlanarImg< FloatType, FloatArray > image = PlanarImgs.floats( 4, 3, 2, 5 );
+		for ( int i = 0; i < image.numSlices(); i++ )
+			image.getPlane( i ).setValue( 5, i );
+
+		final MatVector mats = ImgToMatVectorConverter.toMatVector( image );
+		assertEquals( image.numSlices(), mats.size() );
+		for ( int i = 0; i < image.numSlices(); i++ )
+			assertArrayEquals( image.getPlane( i ).getCurrentStorageArray(), MatToImgConverter.toFloatArray( mats.get( i ) ), 0f );
+	}
+
+	@Test
+	public void testStackToMatVectorOnThreads() {
+		// more planes than threads, the planes are distributed among the threads
+		assertPlanesInOrder( PlanarImgs.floats( 4, 3, 2, 5 ), 4 );
+	}
+
+	@Test
+	public void testFewPlanesToMatVectorOnThreads() {
+		// fewer planes than threads, the pixels of each plane are distributed among the threads
+		assertPlanesInOrder( PlanarImgs.floats( 4, 3, 2 ), 4 );
+	}
+
+	private static void assertPlanesInOrder( final PlanarImg< FloatType, FloatArray > image, final int numThreads ) {
+		for ( int i = 0; i < image.numSlices(); i++ )
+			Arrays.fill( image.getPlane( i ).getCurrentStorageArray(), i );
+		try (TaskExecutor executor = TaskExecutors.fixedThreadPool( numThreads )) {
+			// use a view, so that the planes are copied pixel by pixel
+			final MatVector mats = ImgToMatVectorConverter.toMatVector( Views.interval( image, image ), executor );
+			assertEquals( image.numSlices(), mats.size() );
+			for ( int i = 0; i < image.numSlices(); i++ )
+				assertArrayEquals( image.getPlane( i ).getCurrentStorageArray(), MatToImgConverter.toFloatArray( mats.get( i ) ), 0f );
+		}
+	}
+
+	@Test
+	public void testCellImgToMatConversion() {
+		// the cells do not divide the image evenly
+		final CellImg< FloatType, ? > image = new CellImgFactory<>( new FloatType(), 5, 2, 2 ).create( 13, 7, 3 );
+		final long[] dimensions = Intervals.dimensionsAsLongArray( image );
+		final long[] position = new long[ 3 ];
+		final Cursor< FloatType > cursor = image.localizingCursor();
+		while ( cursor.hasNext() ) {
+			cursor.fwd();
+			cursor.localize( position );
+			cursor.get().set( IntervalIndexer.positionToIndex( position, dimensions ) );
+		}
+
+		final float[] data = MatToImgConverter.toFloatArray( ImgToMatConverter.toMat( image ) );
+		for ( int i = 0; i < data.length; i++ )
+			assertEquals( i, data[ i ], 0f );
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testEmptyMatVectorToImg() {
+		MatVectorToImgConverter.toImg( new MatVector() );
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testZeroDimensionToImg() {
+		MatVectorToImgConverter.toImg( ImgToMatVectorConverter.toMatVector( ArrayImgs.floats( 4, 3, 2 ) ), 2, 0 );
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testEmptyPlanesToMatVector() {
+		ImgToMatVectorConverter.toMatVector( ArrayImgs.floats( 4, 0, 2 ) );
+	}
+
+	@Test
+	public void testBandDimensions() {
+		final long[] dimensions = { 100, 50, 4 };
+		assertArrayEquals( new long[] { 100, 50, 4 }, ImgToMatConverter.getBandDimensions( dimensions, 1 << 30 ) );
+		assertArrayEquals( new long[] { 100, 50, 1 }, ImgToMatConverter.getBandDimensions( dimensions, 5000 ) );
+		assertArrayEquals( new long[] { 100, 10, 1 }, ImgToMatConverter.getBandDimensions( dimensions, 1000 ) );
+		assertArrayEquals( new long[] { 50, 1, 1 }, ImgToMatConverter.getBandDimensions( dimensions, 50 ) );
+	}
+
+	@Test
+	public void testWriteInBands() {
+		final float[] data = new float[ 7 * 5 * 3 ];
+		for ( int i = 0; i < data.length; i++ )
+			data[ i ] = i;
+		final ArrayImg< FloatType, FloatArray > image = ArrayImgs.floats( data, 7, 5, 3 );
+
+		// a view is copied through a wrapped Mat, here in bands of 12 pixels
+		final Mat mat = ImgToMatConverter.toMat( Views.interval( image, image ), new Mat(), 12 * Float.BYTES );
+		assertArrayEquals( new int[] { 3, 5, 7 }, new int[] { mat.size( 0 ), mat.size( 1 ), mat.size( 2 ) } );
+		assertArrayEquals( data, MatToImgConverter.toFloatArray( mat ), 0f );
+
+		// the array of an image is copied in bulk, regardless of the band size
+		final Mat bulk = ImgToMatConverter.toMat( image, new Mat(), 12 * Float.BYTES );
+		assertArrayEquals( data, MatToImgConverter.toFloatArray( bulk ), 0f );
+	}
+
+	@Test
+	public void testCellsWithoutArraysToMat() {
+		// cells over Mats are not backed by Java arrays and are copied through wrapped rows of the Mat
+		final CellGrid grid = new CellGrid( new long[] { 13, 7, 3 }, new int[] { 5, 2, 2 } );
+		final List< Cell< MatFloatAccess > > cells = new ArrayList<>();
+		for ( long i = 0; i < Intervals.numElements( grid.getGridDimensions() ); i++ ) {
+			final long[] min = new long[ 3 ];
+			final int[] size = new int[ 3 ];
+			grid.getCellDimensions( i, min, size );
+			cells.add( new Cell<>( size, min, new MatFloatAccess( new Mat( size[ 2 ] * size[ 1 ], size[ 0 ], CvType.CV_32F ) ) ) );
+		}
+		final LazyCellImg< FloatType, MatFloatAccess > image = new LazyCellImg<>( grid, new FloatType(), index -> cells.get( ( int ) index ) );
+		final long[] dimensions = Intervals.dimensionsAsLongArray( image );
+		final long[] position = new long[ 3 ];
+		final Cursor< FloatType > cursor = image.localizingCursor();
+		while ( cursor.hasNext() ) {
+			cursor.fwd();
+			cursor.localize( position );
+			cursor.get().set( IntervalIndexer.positionToIndex( position, dimensions ) );
+		}
+
+		final float[] data = MatToImgConverter.toFloatArray( ImgToMatConverter.toMat( image ) );
+		for ( int i = 0; i < data.length; i++ )
+			assertEquals( i, data[ i ], 0f );
+	}
+
+	@Test
+	public void testReadInBands() {
+		final float[] data = new float[ 7 * 5 * 3 ];
+		for ( int i = 0; i < data.length; i++ )
+			data[ i ] = i;
+		final Mat mat = ImgToMatConverter.toMat( ArrayImgs.floats( data, 7, 5, 3 ) );
+
+		// a PlanarImg is filled through wrapped bands of 12 pixels
+		final PlanarImg< FloatType, FloatArray > planar = PlanarImgs.floats( 7, 5, 3 );
+		MatToImgConverter.convert( mat, planar, 12 * Float.BYTES );
+		assertArrayEquals( data, ImgToMatConverter.toFloatArray( planar ), 0f );
+
+		// the channels of a band are copied together into the last dimension
+		final Mat channels = new Mat( 5, 7, CvType.CV_32FC3, mat.data() );
+		final ArrayImg< FloatType, FloatArray > img = ArrayImgs.floats( 7, 5, 3 );
+		MatToImgConverter.convert( channels, img, 12 * 3 * Float.BYTES );
+		final float[] expected = new float[ data.length ];
+		for ( int i = 0; i < data.length; i++ )
+			expected[ ( i % 3 ) * 7 * 5 + i / 3 ] = data[ i ];
+		assertArrayEquals( expected, ImgToMatConverter.toFloatArray( img ), 0f );
+	}
+
+	@SuppressWarnings( "unchecked" )
+	@Test
+	public void testMatToCellImg() {
+		final float[] data = new float[ 7 * 5 * 3 ];
+		for ( int i = 0; i < data.length; i++ )
+			data[ i ] = i;
+		final Mat mat = ImgToMatConverter.toMat( ArrayImgs.floats( data, 7, 5, 3 ) );
+
+		final CellImg< FloatType, ? > img = ( CellImg< FloatType, ? > ) MatToImgConverter.toCellImg( mat, 12 );
+		assertArrayEquals( new long[] { 7, 5, 3 }, Intervals.dimensionsAsLongArray( img ) );
+		assertArrayEquals( new long[] { 1, 5, 3 }, img.getCellGrid().getGridDimensions() );
+		assertArrayEquals( data, ImgToMatConverter.toFloatArray( img ), 0f );
+
+		final Mat half = new Mat();
+		mat.convertTo( half, CvType.CV_16F );
+		final CellImg< FloatType, ? > halfImg = ( CellImg< FloatType, ? > ) MatToImgConverter.toCellImg( half, 12 );
+		assertArrayEquals( data, ImgToMatConverter.toFloatArray( halfImg ), 0f );
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testTooManyElementsForArray() {
+		ImgToMatConverter.getArrayLength( 1L << 31 );
+	}
+}
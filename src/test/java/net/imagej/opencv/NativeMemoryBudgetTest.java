@@ -0,0 +1,172 @@
+/*-
+ * #%L
+ * ImageJ/OpenCV Integration
+ * %%
+ * Copyright (C) 2019 - 2024 ImageJ2 developers.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imagej.opencv;
+
+import static org.bytedeco.opencv.global.opencv_core.CV_32F;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.MatVector;
+import org.junit.Test;
+
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.type.numeric.real.FloatType;
+
+public class NativeMemoryBudgetTest {
+
+	@Test
+	public void testFailPolicy() {
+		final NativeMemoryBudget budget = new NativeMemoryBudget( 1000, NativeMemoryBudget.Policy.FAIL );
+
+		// 600 bytes
+		final Mat first = ImgToMatConverter.toMat( ArrayImgs.floats( 10, 15 ), budget );
+		assertEquals( 600, budget.getUsed() );
+		try {
+			ImgToMatConverter.toMat( ArrayImgs.floats( 10, 15 ), budget );
+			throw new AssertionError( "The budget was exceeded" );
+		}
+		catch ( final OutOfMemoryError e ) {
+			// expected
+		}
+
+		first.close();
+		assertEquals( 0, budget.getUsed() );
+		assertEquals( 600, budget.getPeak() );
+		ImgToMatConverter.toMat( ArrayImgs.floats( 10, 15 ), budget ).close();
+		assertEquals( 0, budget.getUsed() );
+	}
+
+	@Test
+	public void testMatVectorKeepsReservation() {
+		final NativeMemoryBudget budget = new NativeMemoryBudget( 10000, NativeMemoryBudget.Policy.FAIL );
+		// 2 planes of 600 bytes
+		final MatVector mats = ImgToMatVectorConverter.toMatVector( ArrayImgs.floats( 10, 15, 2 ), budget );
+		assertEquals( 1200, budget.getUsed() );
+		assertEquals( 2, mats.size() );
+		mats.close();
+		assertEquals( 0, budget.getUsed() );
+	}
+
+	@Test
+	public void testWrappedImgKeepsReservation() {
+		final NativeMemoryBudget budget = new NativeMemoryBudget( 10000, NativeMemoryBudget.Policy.FAIL );
+		final Mat mat = ImgToMatConverter.toMat( ArrayImgs.floats( 10, 15 ), budget );
+		final ArrayImg< FloatType, MatFloatAccess > img = MatToImgConverter.wrapFloatImg( mat );
+		mat.close();
+		// the image still uses the memory
+		assertEquals( 600, budget.getUsed() );
+		assertEquals( 150, img.size() );
+	}
+
+	@Test
+	public void testReallocationIsBudgeted() {
+		final NativeMemoryBudget budget = new NativeMemoryBudget( 1000, NativeMemoryBudget.Policy.FAIL );
+		final Mat mat = ImgToMatConverter.toMat( ArrayImgs.floats( 10, 15 ), budget );
+		assertEquals( 600, budget.getUsed() );
+		ImgToMatConverter.toMat( ArrayImgs.floats( 10, 20 ), mat );
+		assertEquals( 800, budget.getUsed() );
+		try {
+			ImgToMatConverter.toMat( ArrayImgs.floats( 10, 30 ), mat );
+			throw new AssertionError( "The budget was exceeded" );
+		}
+		catch ( final OutOfMemoryError e ) {
+			// expected
+		}
+		assertTrue( mat.empty() );
+		assertEquals( 0, budget.getUsed() );
+		mat.close();
+		assertEquals( 0, budget.getUsed() );
+	}
+
+	@Test
+	public void testFactoryAndPool() {
+		final NativeMemoryBudget budget = new NativeMemoryBudget( 10000, NativeMemoryBudget.Policy.FAIL );
+		final ArrayImg< FloatType, ? > img = new MatImgFactory<>( new FloatType(), budget ).create( 10, 15 );
+		assertEquals( 600, budget.getUsed() );
+		try (MatPool pool = new MatPool( 1, Long.MAX_VALUE, budget )) {
+			final Mat mat = pool.acquire( new int[] { 15, 10 }, CV_32F );
+			assertEquals( 1200, budget.getUsed() );
+			pool.release( mat );
+		}
+		assertEquals( 600, budget.getUsed() );
+		assertEquals( 150, img.size() );
+	}
+
+	@Test( expected = OutOfMemoryError.class )
+	public void testAllocationLargerThanBudget() {
+		final NativeMemoryBudget budget = new NativeMemoryBudget( 100, NativeMemoryBudget.Policy.BLOCK );
+		ImgToMatConverter.toMat( ArrayImgs.floats( 10, 15 ), budget );
+	}
+
+	@Test
+	public void testBlockPolicy() throws InterruptedException {
+		final NativeMemoryBudget budget = new NativeMemoryBudget( 1000, NativeMemoryBudget.Policy.BLOCK );
+		final Mat first = ImgToMatConverter.toMat( ArrayImgs.floats( 10, 15 ), budget );
+		final CountDownLatch allocated = new CountDownLatch( 1 );
+		final AtomicReference< Mat > second = new AtomicReference<>();
+		final Thread thread = new Thread( () -> {
+			second.set( ImgToMatConverter.toMat( ArrayImgs.floats( 10, 15 ), budget ) );
+			allocated.countDown();
+		} );
+		thread.start();
+		// blocks until the first Mat is closed
+		while ( budget.getWaiting() == 0 )
+			Thread.yield();
+		assertEquals( 1, allocated.getCount() );
+		first.close();
+		assertTrue( allocated.await( 10, TimeUnit.SECONDS ) );
+		second.get().close();
+		thread.join();
+	}
+
+	@Test( expected = OutOfMemoryError.class )
+	public void testBlockPolicyTimesOut() {
+		final NativeMemoryBudget budget = new NativeMemoryBudget( 1000, NativeMemoryBudget.Policy.BLOCK, 10 );
+		final Mat first = ImgToMatConverter.toMat( ArrayImgs.floats( 10, 15 ), budget );
+		try {
+			ImgToMatConverter.toMat( ArrayImgs.floats( 10, 15 ), budget );
+		}
+		finally {
+			first.close();
+		}
+	}
+
+	@Test( timeout = 10000, expected = OutOfMemoryError.class )
+	public void testMatVectorLargerThanBudgetFails() {
+		final NativeMemoryBudget budget = new NativeMemoryBudget( 1000, NativeMemoryBudget.Policy.BLOCK );
+		// 2 planes of 600 bytes, each fitting into the budget on its own
+		ImgToMatVectorConverter.toMatVector( ArrayImgs.floats( 10, 15, 2 ), budget );
+	}
+}
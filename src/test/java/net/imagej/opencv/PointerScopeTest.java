@@ -0,0 +1,121 @@
+/*-
+ * #%L
+ * ImageJ/OpenCV Integration
+ * %%
+ * Copyright (C) 2019 - 2024 ImageJ2 developers.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imagej.opencv;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bytedeco.javacpp.Pointer;
+import org.bytedeco.javacpp.PointerScope;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.MatVector;
+import org.junit.Test;
+
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.parallel.Parallelization;
+import net.imglib2.type.numeric.real.FloatType;
+
+/**
+ * Checks that the native memory allocated by the converters is released
+ * when the enclosing {@link PointerScope} is closed.
+ */
+public class PointerScopeTest {
+
+	@Test
+	public void testMatIsReleasedWithScope() {
+		final long count = Pointer.totalCount();
+		final Mat mat;
+		try (PointerScope scope = new PointerScope()) {
+			mat = ImgToMatConverter.toMat( ArrayImgs.floats( 4, 3 ) );
+			assertFalse( mat.isNull() );
+		}
+		assertReleased( mat );
+		assertNoLeaks( count );
+	}
+
+	@Test
+	public void testParallelMatVectorIsReleasedWithScope() {
+		final List< Pointer > pointers = new ArrayList<>();
+		final long count = Pointer.totalCount();
+		Parallelization.runWithNumThreads( 4, () -> {
+			try (PointerScope scope = new PointerScope()) {
+				// enough planes to be converted on all threads
+				final MatVector mats = ImgToMatVectorConverter.toMatVector( ArrayImgs.unsignedBytes( 4, 3, 16 ) );
+				pointers.add( mats );
+				for ( int i = 0; i < mats.size(); i++ )
+					pointers.add( mats.get( i ) );
+			}
+		} );
+		for ( final Pointer pointer : pointers )
+			assertReleased( pointer );
+		// Mats allocated on the worker threads would not belong to the scope
+		assertNoLeaks( count );
+	}
+
+	@Test
+	public void testWrappedMatOutlivesScope() {
+		final RandomAccessibleInterval< FloatType > img;
+		try (PointerScope scope = new PointerScope()) {
+			final Mat mat = ImgToMatConverter.toMat( ArrayImgs.floats( new float[] { 1, 2, 3, 4, 5, 6 }, 3, 2 ) );
+			img = MatToImgConverter.wrapFloatImg( mat );
+		}
+		assertArrayEquals( new float[] { 1, 2, 3, 4, 5, 6 }, ImgToMatConverter.toFloatArray( img ), 0f );
+	}
+
+	@Test
+	public void testPooledMatOutlivesScope() {
+		try (MatPool pool = new MatPool( 1, 1 << 20 )) {
+			final Mat mat;
+			try (PointerScope scope = new PointerScope()) {
+				mat = ImgToMatConverter.toMat( ArrayImgs.floats( 4, 3 ), pool );
+			}
+			assertFalse( mat.isNull() );
+			pool.release( mat );
+		}
+	}
+
+	private static void assertReleased( final Pointer pointer ) {
+		assertTrue( "Leaked " + pointer, pointer.isNull() );
+	}
+
+	/**
+	 * Asserts that no more pointers are tracked by JavaCPP than the given
+	 * number counted before converting. The garbage collector may only
+	 * release other pointers in the meantime.
+	 */
+	private static void assertNoLeaks( final long count ) {
+		final long leaked = Pointer.totalCount() - count;
+		assertTrue( "Leaked " + leaked + " pointers", leaked <= 0 );
+	}
+}
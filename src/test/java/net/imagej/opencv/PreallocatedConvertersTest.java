@@ -0,0 +1,90 @@
+/*-
+ * #%L
+ * ImageJ/OpenCV Integration
+ * %%
+ * Copyright (C) 2019 - 2024 ImageJ2 developers.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imagej.opencv;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.junit.Test;
+import org.opencv.core.CvType;
+
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
+
+public class PreallocatedConvertersTest {
+
+	@Test
+	public void testToMatReusesMat() {
+		final Mat dst = new Mat();
+		assertSame( dst, ImgToMatConverter.toMat( ArrayImgs.floats( new float[] { 1, 2, 3, 4, 5, 6 }, 3, 2 ), dst ) );
+		final long address = dst.data().address();
+
+		ImgToMatConverter.toMat( ArrayImgs.floats( new float[] { 6, 5, 4, 3, 2, 1 }, 3, 2 ), dst );
+		assertEquals( address, dst.data().address() );
+		assertArrayEquals( new float[] { 6, 5, 4, 3, 2, 1 }, MatToImgConverter.toFloatArray( dst ), 0f );
+
+		// a different type needs a new buffer
+		ImgToMatConverter.toMat( ArrayImgs.unsignedBytes( new byte[] { 1, 2 }, 2, 1 ), dst );
+		assertEquals( CvType.CV_8UC1, dst.type() );
+		assertEquals( 2, dst.cols() );
+		assertArrayEquals( new byte[] { 1, 2 }, MatToImgConverter.toByteArray( dst ) );
+	}
+
+	@Test
+	public void testConvertIntoImage() {
+		final Mat src = ImgToMatConverter.toMat( ArrayImgs.floats( new float[] { 1, 2, 3, 4, 5, 6 }, 3, 2 ) );
+
+		final ArrayImg< FloatType, FloatArray > dst = ArrayImgs.floats( 3, 2 );
+		assertSame( dst, MatToImgConverter.convert( src, dst ) );
+		assertArrayEquals( new float[] { 1, 2, 3, 4, 5, 6 }, dst.update( null ).getCurrentStorageArray(), 0f );
+
+		// a view is written pixel by pixel
+		final ArrayImg< FloatType, FloatArray > target = ArrayImgs.floats( 2, 3 );
+		MatToImgConverter.convert( src, Views.permute( target, 0, 1 ) );
+		assertEquals( 4f, target.getAt( 1, 0 ).get(), 0f );
+		assertEquals( 6f, target.getAt( 1, 2 ).get(), 0f );
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testConvertIntoImageOfWrongSize() {
+		final Mat src = ImgToMatConverter.toMat( ArrayImgs.floats( 3, 2 ) );
+		MatToImgConverter.convert( src, ArrayImgs.floats( 2, 3 ) );
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testConvertIntoImageOfWrongType() {
+		final Mat src = ImgToMatConverter.toMat( ArrayImgs.floats( 3, 2 ) );
+		MatToImgConverter.convert( src, ArrayImgs.unsignedBytes( 3, 2 ) );
+	}
+}
@@ -0,0 +1,92 @@
+/*-
+ * #%L
+ * ImageJ/OpenCV Integration
+ * %%
+ * Copyright (C) 2019 - 2024 ImageJ2 developers.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imagej.opencv;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.junit.Test;
+import org.opencv.core.CvType;
+
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.IntArray;
+import net.imglib2.img.basictypeaccess.array.LongArray;
+import net.imglib2.type.numeric.integer.LongType;
+import net.imglib2.type.numeric.integer.Unsigned12BitType;
+import net.imglib2.type.numeric.integer.UnsignedIntType;
+
+public class RealTypeConvertersTest {
+
+	@Test
+	public void testScaledConversionToFloat() {
+		final Mat mat = ImgToMatConverter.toMat( ArrayImgs.unsignedBytes( new byte[] { 0, 51, ( byte ) 255 }, 3 ), CvType.CV_32F, 1 / 255.0, 1 );
+		assertEquals( CvType.CV_32FC1, mat.type() );
+		assertArrayEquals( new float[] { 1f, 1.2f, 2f }, MatToImgConverter.toFloatArray( mat ), 1e-6f );
+	}
+
+	@Test
+	public void testScaledConversionSaturates() {
+		final Mat mat = ImgToMatConverter.toMat( ArrayImgs.floats( new float[] { -5f, 2.5f, 3.5f, 100.4f, 300f }, 5 ), CvType.CV_8U, 2, 0 );
+		assertEquals( CvType.CV_8UC1, mat.type() );
+		// values are rounded half to even, like cvRound
+		assertArrayEquals( new byte[] { 0, 5, 7, ( byte ) 201, ( byte ) 255 }, MatToImgConverter.toByteArray( mat ) );
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testScaledConversionToHalfFloat() {
+		ImgToMatConverter.toMat( ArrayImgs.floats( 3 ), CvType.CV_16F, 1, 0 );
+	}
+
+	@Test
+	public void testUnsignedIntImageToMat() {
+		final ArrayImg< UnsignedIntType, IntArray > image = ArrayImgs.unsignedInts( new int[] { 0, 7, 0xffffffff }, 3 );
+		final Mat mat = ImgToMatConverter.toMat( image );
+		assertEquals( CvType.CV_64FC1, mat.type() );
+		assertArrayEquals( new double[] { 0, 7, 4294967295.0 }, MatToImgConverter.toDoubleArray( mat ), 0 );
+	}
+
+	@Test
+	public void testLongImageToMat() {
+		final ArrayImg< LongType, LongArray > image = ArrayImgs.longs( new long[] { -3, 1L << 40 }, 2 );
+		final Mat mat = ImgToMatConverter.toMat( image );
+		assertEquals( CvType.CV_64FC1, mat.type() );
+		assertArrayEquals( new double[] { -3, 1L << 40 }, MatToImgConverter.toDoubleArray( mat ), 0 );
+	}
+
+	@Test
+	public void testUnsigned12BitImageToMat() {
+		final ArrayImg< Unsigned12BitType, LongArray > image = ArrayImgs.unsigned12Bits( 3 );
+		image.getAt( 1 ).set( 4095 );
+		final Mat mat = ImgToMatConverter.toMat( image );
+		assertEquals( CvType.CV_16UC1, mat.type() );
+		assertArrayEquals( new short[] { 0, 4095, 0 }, MatToImgConverter.toShortArray( mat ) );
+	}
+}
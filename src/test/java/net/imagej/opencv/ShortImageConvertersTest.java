@@ -0,0 +1,134 @@
+/*-
+ * #%L
+ * ImageJ/OpenCV Integration
+ * %%
+ * Copyright (C) 2019 - 2024 ImageJ2 developers.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imagej.opencv;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.bytedeco.javacpp.FloatPointer;
+import org.bytedeco.javacpp.ShortPointer;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.MatVector;
+import org.junit.Test;
+import org.opencv.core.CvType;
+
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.ShortArray;
+import net.imglib2.type.numeric.integer.ShortType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Intervals;
+
+public class ShortImageConvertersTest extends ConvertersTestBase {
+
+	@SuppressWarnings( "unchecked" )
+	@Test
+	public void testFullCircleConversionFromIJ() {
+		final short[] data = { 0, 1, 1000, ( short ) 40000, ( short ) 65535, 12 };
+		final ArrayImg< UnsignedShortType, ShortArray > image = ArrayImgs.unsignedShorts( data, 3, 2 );
+
+		final Mat cvMat = new ImgToMatConverter().convert( image, Mat.class );
+		assertEquals( CvType.CV_16UC1, cvMat.type() );
+
+		final RandomAccessibleInterval< UnsignedShortType > cvImg = ( RandomAccessibleInterval< UnsignedShortType > ) MatToImgConverter.convert( cvMat );
+		assertArrayEquals( data, ImgToMatConverter.toUShortArray( cvImg ) );
+	}
+
+	@SuppressWarnings( "unchecked" )
+	@Test
+	public void testFullCircleConversionFromMat() {
+		final Mat mat = new Mat( 2, 2, CvType.CV_16SC1 );
+		new ShortPointer( mat.data() ).put( new short[] { -32768, -1, 0, 32767 } );
+
+		final RandomAccessibleInterval< ShortType > cvImg = ( RandomAccessibleInterval< ShortType > ) MatToImgConverter.convert( mat );
+		final Mat cvMat = new ImgToMatConverter().convert( cvImg, Mat.class );
+		checkData( cvMat, mat );
+	}
+
+	@SuppressWarnings( "unchecked" )
+	@Test
+	public void testHalfFloatMatToImgConversion() {
+		final float[] data = { 0f, -0.5f, 1f, 2048f, -65504f, 0x1p-24f };
+		final Mat mat = new Mat( 2, 3, CvType.CV_32FC1 );
+		new FloatPointer( mat.data() ).put( data );
+		final Mat half = new Mat();
+		mat.convertTo( half, CvType.CV_16F );
+
+		final RandomAccessibleInterval< FloatType > cvImg = ( RandomAccessibleInterval< FloatType > ) MatToImgConverter.convert( half );
+		assertArrayEquals( data, ImgToMatConverter.toFloatArray( cvImg ), 0f );
+	}
+
+	@SuppressWarnings( "unchecked" )
+	@Test
+	public void testMultiChannelHalfFloatMatToImgConversion() {
+		final float[] data = { 0f, -0.5f, 1f, 2048f, -65504f, 0x1p-24f };
+		final Mat mat = new Mat( 1, 3, CvType.CV_32FC2 );
+		new FloatPointer( mat.data() ).put( data );
+		final Mat half = new Mat();
+		mat.convertTo( half, CvType.CV_16F );
+
+		final RandomAccessibleInterval< FloatType > cvImg = ( RandomAccessibleInterval< FloatType > ) MatToImgConverter.convert( half );
+		assertArrayEquals( new long[] { 3, 1, 2 }, Intervals.dimensionsAsLongArray( cvImg ) );
+		assertArrayEquals( new float[] { 0f, 1f, -65504f, -0.5f, 2048f, 0x1p-24f }, ImgToMatConverter.toFloatArray( cvImg ), 0f );
+	}
+
+	@Test
+	public void testHalfFloatMatIntoImg() {
+		final float[] data = { 0f, -0.5f, 1f, 2048f, -65504f, 0x1p-24f };
+		final Mat half = toHalfMat( data, 2, 3 );
+
+		final ArrayImg< FloatType, ? > img = ArrayImgs.floats( 3, 2 );
+		MatToImgConverter.convert( half, img );
+		assertArrayEquals( data, ImgToMatConverter.toFloatArray( img ), 0f );
+	}
+
+	@Test
+	public void testHalfFloatMatVectorToImg() {
+		final MatVector mats = new MatVector( toHalfMat( new float[] { 1, 2, 3, 4 }, 2, 2 ), toHalfMat( new float[] { 5, 6, 7, 8 }, 2, 2 ) );
+		final float[] expected = { 1, 2, 3, 4, 5, 6, 7, 8 };
+		assertArrayEquals( expected, ImgToMatConverter.toFloatArray( cast( MatVectorToImgConverter.toArrayImg( mats ) ) ), 0f );
+		assertArrayEquals( expected, ImgToMatConverter.toFloatArray( cast( MatVectorToImgConverter.toPlanarImg( mats ) ) ), 0f );
+		assertArrayEquals( expected, ImgToMatConverter.toFloatArray( cast( MatVectorToImgConverter.toLazyImg( mats ) ) ), 0f );
+	}
+
+	@SuppressWarnings( "unchecked" )
+	private static RandomAccessibleInterval< FloatType > cast( final RandomAccessibleInterval< ? > image ) {
+		return ( RandomAccessibleInterval< FloatType > ) image;
+	}
+
+	private static Mat toHalfMat( final float[] data, final int rows, final int cols ) {
+		final Mat mat = new Mat( rows, cols, CvType.CV_32FC1 );
+		new FloatPointer( mat.data() ).put( data );
+		final Mat half = new Mat();
+		mat.convertTo( half, CvType.CV_16F );
+		return half;
+	}
+}